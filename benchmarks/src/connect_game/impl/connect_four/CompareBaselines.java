@@ -0,0 +1,80 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Description: Compares two JMH result files written with
+ * "-rf json" and prints the change of every benchmark that appears in
+ * both, flagging anything slower than the tolerance (10% by default).
+ * Exits with status 1 if a regression was found, so the comparison
+ * can gate a build.
+ *
+ * Arguments: baseline.json current.json [tolerance percent]
+ *
+ * */
+public class CompareBaselines {
+
+  // picks the benchmark name, its parameters and the primary score
+  // out of each result, without needing a JSON library
+  private static final Pattern RESULT = Pattern.compile(
+      "\"benchmark\"\\s*:\\s*\"([^\"]+)\"(.*?)\"primaryMetric\"\\s*:\\s*\\{"
+      + "\\s*\"score\"\\s*:\\s*([-0-9.eE]+|\"NaN\")",
+      Pattern.DOTALL);
+  private static final Pattern PARAMS = Pattern.compile(
+      "\"params\"\\s*:\\s*\\{([^}]*)\\}");
+
+  public static void main(String [] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: CompareBaselines baseline.json current.json"
+          + " [tolerance percent]");
+      System.exit(2);
+    }
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+    Map<String, Double> baseline = read(args[0]);
+    Map<String, Double> current = read(args[1]);
+
+    boolean regressed = false;
+    for (Map.Entry<String, Double> entry : current.entrySet()) {
+      Double before = baseline.get(entry.getKey());
+      if (before == null) {
+        System.out.printf("%-50s %12.3f  (new)%n", entry.getKey(),
+            entry.getValue());
+        continue;
+      }
+      // every benchmark reports average time, so higher is slower
+      double change = (entry.getValue() - before) / before * 100;
+      boolean slower = change > tolerance;
+      regressed |= slower;
+      System.out.printf("%-50s %12.3f -> %12.3f  %+7.1f%%%s%n",
+          entry.getKey(), before, entry.getValue(), change,
+          slower ? "  REGRESSION" : "");
+    }
+    System.exit(regressed ? 1 : 0);
+  }
+
+  private static Map<String, Double> read(String file) throws IOException {
+    String json = new String(Files.readAllBytes(Paths.get(file)), "UTF-8");
+    Map<String, Double> scores = new LinkedHashMap<String, Double>();
+    Matcher result = RESULT.matcher(json);
+    while (result.find()) {
+      // keeps only the class and method of the benchmark name
+      String name = result.group(1);
+      name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1)
+          + 1);
+      Matcher params = PARAMS.matcher(result.group(2));
+      if (params.find()) {
+        name += " {" + params.group(1).replaceAll("[\\s\"]", "") + "}";
+      }
+      String score = result.group(3);
+      scores.put(name, score.startsWith("\"") ? Double.NaN
+          : Double.parseDouble(score));
+    }
+    return scores;
+  }
+}
@@ -0,0 +1,146 @@
+package connect_game.impl.connect_four;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/*
+ * Description: Measures what idle connections cost a
+ * ThreadPerConnectionServer. The server runs in this process and the
+ * given number of connections is opened to it (paired into matches
+ * like real boards). Once every match has started, the tool prints
+ * the heap in use after a collection, the resident set size (where
+ * platform thread stacks live) and the live platform thread count,
+ * each relative to before the server started, and then the round
+ * trip latency of a restart relayed by one match's two readers while
+ * all the other connections sit idle.
+ *
+ * The client sockets are opened in this process as well, so both
+ * modes carry the same client-side cost; compare the two modes rather
+ * than reading either one as the server's cost alone.
+ *
+ * Arguments: [virtual|platform] [connections] [round trips] [port]
+ *
+ * */
+public class ConnectionScale {
+
+  public static void main(String [] args) throws Exception {
+    boolean platform = args.length > 0 && args[0].equals("platform");
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int roundTrips = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+    int port = args.length > 3 ? Integer.parseInt(args[3]) : 46000;
+    connections -= connections % 2;
+
+    long heapBefore = usedHeap();
+    long rssBefore = residentSet();
+    int threadsBefore = liveThreads();
+
+    ThreadPerConnectionServer server =
+        new ThreadPerConnectionServer(port, platform);
+    Thread acceptor = new Thread(server::start, "acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    Thread.sleep(500);
+
+    long start = System.nanoTime();
+    Client[] clients = new Client[connections];
+    for (int i = 0; i < connections; i++) {
+      clients[i] = new Client(new Socket("127.0.0.1", port));
+    }
+    // every red player is sent a turn swap once its match is running
+    for (int i = 0; i < connections; i += 2) {
+      clients[i].receive();
+    }
+    long connectMillis = (System.nanoTime() - start) / 1000000;
+    Thread.sleep(1000);
+
+    long heapAfter = usedHeap();
+    long rssAfter = residentSet();
+    int threadsAfter = liveThreads();
+
+    Client red = clients[0];
+    Client yellow = clients[1];
+    long[] samples = new long[roundTrips];
+    for (int i = 0; i < roundTrips; i++) {
+      long sent = System.nanoTime();
+      red.send(GameProtocol.RESTART);
+      yellow.receive();
+      yellow.send(GameProtocol.RESTART);
+      red.receive();
+      samples[i] = System.nanoTime() - sent;
+    }
+    Arrays.sort(samples);
+
+    System.out.println("mode            " + (server.usesVirtualThreads()
+        ? "virtual" : "platform") + " threads");
+    System.out.println("connections     " + connections + " ("
+        + connections / 2 + " matches, connected in " + connectMillis
+        + " ms)");
+    System.out.printf("heap            %+,d KB (%,d bytes per connection)%n",
+        (heapAfter - heapBefore) / 1024,
+        (heapAfter - heapBefore) / connections);
+    System.out.printf("resident set    %+,d KB (%,d bytes per connection)%n",
+        (rssAfter - rssBefore) / 1024, (rssAfter - rssBefore) / connections);
+    System.out.println("platform threads +" + (threadsAfter - threadsBefore));
+    System.out.printf("round trip      p50 %.1f us, p99 %.1f us,"
+        + " max %.1f us%n", samples[roundTrips / 2] / 1000.0,
+        samples[roundTrips * 99 / 100] / 1000.0,
+        samples[roundTrips - 1] / 1000.0);
+    System.exit(0);
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  // VmRSS from /proc, in bytes, or 0 where there is no /proc
+  private static long residentSet() throws IOException {
+    if (!Files.exists(Paths.get("/proc/self/status"))) {
+      return 0;
+    }
+    for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+      if (line.startsWith("VmRSS:")) {
+        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+      }
+    }
+    return 0;
+  }
+
+  private static int liveThreads() {
+    return ManagementFactory.getThreadMXBean().getThreadCount();
+  }
+
+  // a bare blocking client speaking GameProtocol frames
+  private static class Client {
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final byte[] frame = new byte[GameProtocol.FRAME_LENGTH];
+    private final ByteBuffer buffer = ByteBuffer.wrap(frame);
+    private int sequence = 0;
+
+    Client(Socket socket) throws IOException {
+      socket.setTcpNoDelay(true);
+      input = new DataInputStream(socket.getInputStream());
+      output = new DataOutputStream(socket.getOutputStream());
+    }
+
+    void send(byte type) throws IOException {
+      buffer.clear();
+      GameProtocol.encode(buffer, type, ++sequence, 0);
+      output.write(frame);
+    }
+
+    void receive() throws IOException {
+      input.readFully(frame);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Description: Benchmarks the game rules on an empty board, a board
+ * in the middle of a game and a completely full board (which ends in
+ * a draw). Dropping a chip changes the board, so drops are measured by
+ * replaying a whole game from an empty board and reporting the time
+ * per drop, including the incremental win check that comes with it.
+ *
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+  // a drawn game which fills the whole 6 x 7 board, as 1-based columns
+  static final String FULL_GAME =
+      "766351512236674467165515321534217322377444";
+
+  // the first 20 moves of the full game, with no winner yet
+  static final String MID_GAME = FULL_GAME.substring(0, 20);
+
+  // a board which is only read, never changed, by the benchmarks
+  @State(Scope.Thread)
+  public static class Board {
+    @Param({"empty", "midgame", "full"})
+    public String board;
+
+    GameState state;
+
+    @Setup
+    public void setUp() {
+      state = play(board.equals("full") ? FULL_GAME
+          : board.equals("midgame") ? MID_GAME : "");
+    }
+  }
+
+  // a board which is emptied and refilled by every invocation
+  @State(Scope.Thread)
+  public static class Replay {
+    GameState state;
+    int[] columns;
+
+    @Setup
+    public void setUp() {
+      state = play("");
+      columns = new int[FULL_GAME.length()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = FULL_GAME.charAt(i) - '1';
+      }
+    }
+  }
+
+  // builds a board by alternating red and yellow chips
+  static GameState play(String moves) {
+    GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+    GameState.colorType color = GameState.colorType.RED;
+    for (int i = 0; i < moves.length(); i++) {
+      game.dropInColumn(moves.charAt(i) - '1', color);
+      color = (color == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+    if (game.getMoveCount() != moves.length()
+        || game.getWinner() != GameState.colorType.UNKNOWN) {
+      throw new IllegalStateException("Benchmark board is not as expected");
+    }
+    return game;
+  }
+
+  // every drop of a whole game, from the empty board to the full one
+  @Benchmark
+  @OperationsPerInvocation(42)
+  public int dropInColumn(Replay replay) {
+    GameState state = replay.state;
+    state.reset();
+    GameState.colorType color = GameState.colorType.RED;
+    int rows = 0;
+    for (int column : replay.columns) {
+      rows += state.dropInColumn(column, color);
+      color = (color == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+    return rows;
+  }
+
+  @Benchmark
+  public boolean columnIsFull(Board board) {
+    return board.state.columnIsFull(GameSession.COLS / 2);
+  }
+
+  @Benchmark
+  public boolean gameIsOver(Board board) {
+    return board.state.gameIsOver();
+  }
+
+  // the full board scan which replaced boardHasNoWins
+  @Benchmark
+  public boolean hasWonFullScan(Board board) {
+    return board.state.hasWon(GameState.colorType.RED)
+        || board.state.hasWon(GameState.colorType.YELLOW);
+  }
+}
@@ -0,0 +1,386 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Description: Stress-tests a running game server (NioServerDemo or
+ * HeadlessServerDemo threads) with simulated players. Every bot is a
+ * connection speaking the same frames as ClientServerSocket, paired
+ * into matches by the server like any board. When it is a bot's turn
+ * it waits a random think time and then restarts, swaps the turn or
+ * plays a legal move, each with the given chance; moves are random or
+ * follow a script of columns from the start of each game, and a won or
+ * full board is always restarted. The bots of one event loop thread
+ * share a selector, so thousands of them need only a thread per core.
+ *
+ * Each bot also keeps one PING outstanding, which the server answers
+ * straight away, so the ping round trip is the server's own latency
+ * under the load; the turn response is the time from a bot's message
+ * to its opponent's answer, think time included. Every second the
+ * tool prints the connections and the moves per second, and at the
+ * end the totals and percentiles.
+ *
+ * Arguments: [host] [port=45000] [bots=1000] [seconds=30]
+ *            [think min ms=0] [think max ms=0] [restart %=1] [swap %=1]
+ *            [script of 1-based columns, e.g. 4453]
+ *
+ * */
+public class LoadGenerator {
+
+  private static final Metrics.Counter MOVES =
+      Metrics.counter("load.moves");
+  private static final Metrics.Counter RESTARTS =
+      Metrics.counter("load.restarts");
+  private static final Metrics.Counter SWAPS =
+      Metrics.counter("load.swaps");
+  private static final Metrics.Histogram PING_ROUND_TRIP =
+      Metrics.histogram("load.pingRoundTrip");
+  private static final Metrics.Histogram TURN_RESPONSE =
+      Metrics.histogram("load.turnResponse");
+
+  private static final AtomicInteger connected = new AtomicInteger();
+  private static final AtomicInteger matched = new AtomicInteger();
+  private static final AtomicInteger disconnected = new AtomicInteger();
+
+  private final long thinkMinNanos;
+  private final long thinkMaxNanos;
+  private final int restartPercent;
+  private final int swapPercent;
+  private final int[] script;
+
+  LoadGenerator(long thinkMinMillis, long thinkMaxMillis,
+      int inRestartPercent, int inSwapPercent, int[] inScript) {
+    thinkMinNanos = thinkMinMillis * 1000000L;
+    thinkMaxNanos = Math.max(thinkMinMillis, thinkMaxMillis) * 1000000L;
+    restartPercent = inRestartPercent;
+    swapPercent = inSwapPercent;
+    script = inScript;
+  }
+
+  public static void main(String [] args) throws Exception {
+    String host = args.length > 0 ? args[0] : "127.0.0.1";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 45000;
+    int bots = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+    long thinkMin = args.length > 4 ? Long.parseLong(args[4]) : 0;
+    long thinkMax = args.length > 5 ? Long.parseLong(args[5]) : thinkMin;
+    int restart = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+    int swap = args.length > 7 ? Integer.parseInt(args[7]) : 1;
+    int[] script = new int[args.length > 8 ? args[8].length() : 0];
+    for (int i = 0; i < script.length; i++) {
+      script[i] = args[8].charAt(i) - '1';
+    }
+    LoadGenerator generator =
+        new LoadGenerator(thinkMin, thinkMax, restart, swap, script);
+
+    int loopCount = Math.min(bots,
+        Runtime.getRuntime().availableProcessors());
+    BotLoop[] loops = new BotLoop[loopCount];
+    for (int i = 0; i < loopCount; i++) {
+      loops[i] = generator.new BotLoop();
+      Thread thread = new Thread(loops[i], "bot-loop-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    InetSocketAddress server = new InetSocketAddress(host, port);
+    long start = System.nanoTime();
+    for (int i = 0; i < bots; i++) {
+      try {
+        SocketChannel channel = SocketChannel.open(server);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        loops[i % loopCount].add(channel);
+        connected.incrementAndGet();
+      }
+      catch (IOException ioe) {
+        System.out.println("Error: can't connect bot " + i + " - is the"
+            + " server running? " + ioe.getMessage());
+        System.exit(10);
+      }
+    }
+    System.out.println(bots + " bots connected in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+
+    long measureStart = System.nanoTime();
+    long lastMoves = 0;
+    for (int s = 1; s <= seconds; s++) {
+      Thread.sleep(1000);
+      long moves = MOVES.getCount();
+      System.out.println("t=" + s + "s connected " + connected.get()
+          + " matched " + matched.get() + " disconnected "
+          + disconnected.get() + " moves/s " + (moves - lastMoves));
+      lastMoves = moves;
+    }
+    double elapsed = (System.nanoTime() - measureStart) / 1e9;
+
+    System.out.println("bots            " + bots + " on " + loopCount
+        + " threads, think " + thinkMin + "-" + Math.max(thinkMin, thinkMax)
+        + " ms, restart " + restart + "%, swap " + swap + "%"
+        + (script.length > 0 ? ", scripted" : ", random moves"));
+    System.out.println("connections     " + connected.get() + " connected, "
+        + matched.get() + " matched, " + disconnected.get()
+        + " disconnected");
+    System.out.printf("moves           %d (%.0f/s), %d restarts, %d swaps%n",
+        MOVES.getCount(), MOVES.getCount() / elapsed, RESTARTS.getCount(),
+        SWAPS.getCount());
+    System.out.println(PING_ROUND_TRIP);
+    System.out.println(TURN_RESPONSE);
+    System.exit(0);
+  }
+
+  // the think time before the next action, chosen at random
+  long thinkTime() {
+    return thinkMaxNanos == thinkMinNanos ? thinkMinNanos
+        : ThreadLocalRandom.current().nextLong(thinkMinNanos, thinkMaxNanos);
+  }
+
+  // one thread's share of the bots: reads their frames and sends
+  // their actions once their think time is up
+  class BotLoop implements Runnable {
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<SocketChannel> newChannels =
+        new ConcurrentLinkedQueue<SocketChannel>();
+    private final PriorityQueue<Bot> thinking = new PriorityQueue<Bot>(
+        (a, b) -> Long.compare(a.dueNanos, b.dueNanos));
+    private final GameMessage message = new GameMessage();
+
+    BotLoop() throws IOException {
+      selector = Selector.open();
+    }
+
+    // called from the connecting thread
+    void add(SocketChannel channel) {
+      newChannels.add(channel);
+      selector.wakeup();
+    }
+
+    public void run() {
+      while (true) {
+        try {
+          // sleep until the next bot has finished thinking
+          if (thinking.isEmpty()) {
+            selector.select();
+          }
+          else {
+            long due = thinking.peek().dueNanos - System.nanoTime();
+            if (due <= 0) {
+              selector.selectNow();
+            }
+            else {
+              selector.select((due + 999999) / 1000000);
+            }
+          }
+          SocketChannel channel;
+          while ((channel = newChannels.poll()) != null) {
+            Bot bot = new Bot(channel);
+            bot.key = channel.register(selector, SelectionKey.OP_READ, bot);
+          }
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Bot bot = (Bot) key.attachment();
+            try {
+              if (key.isValid() && key.isReadable()) {
+                read(bot);
+              }
+              if (key.isValid() && key.isWritable()) {
+                flush(bot);
+              }
+            }
+            catch (IOException | IllegalArgumentException error) {
+              close(bot);
+            }
+          }
+          long now = System.nanoTime();
+          while (!thinking.isEmpty() && thinking.peek().dueNanos <= now) {
+            Bot bot = thinking.poll();
+            try {
+              act(bot);
+            }
+            catch (IOException ioe) {
+              close(bot);
+            }
+          }
+        }
+        catch (IOException ioe) {
+          System.out.println("Error: bot event loop selector failed.");
+        }
+      }
+    }
+
+    private void read(Bot bot) throws IOException {
+      if (bot.channel.read(bot.input) < 0) {
+        throw new IOException("Connection closed by server");
+      }
+      bot.input.flip();
+      while (GameProtocol.decode(bot.input, message)) {
+        handleMessage(bot, message);
+      }
+      bot.input.compact();
+    }
+
+    // method intends to apply the opponent's message to the bot's copy
+    // of the game, after which it is the bot's turn
+    private void handleMessage(Bot bot, GameMessage message)
+        throws IOException {
+      long now = System.nanoTime();
+      if (message.type == GameProtocol.ACK) {
+        if (message.value == bot.pingSequence) {
+          PING_ROUND_TRIP.record(now - bot.pingSentNanos);
+          bot.pingSequence = 0;
+        }
+        return;
+      }
+      if (message.type == GameProtocol.PING) {
+        send(bot, GameProtocol.ACK, message.sequence);
+        return;
+      }
+      if (bot.color == null) {
+        // the server hands red its first turn with a turn swap, and
+        // red never opens a match with one, so the first message tells
+        // a bot its color
+        bot.color = (message.type == GameProtocol.SWAP_TURN)
+            ? GameState.colorType.RED : GameState.colorType.YELLOW;
+        matched.incrementAndGet();
+      }
+      if (bot.sentNanos != 0) {
+        TURN_RESPONSE.record(now - bot.sentNanos);
+        bot.sentNanos = 0;
+      }
+      if (message.type == GameProtocol.RESTART) {
+        bot.game.reset();
+      }
+      else if (message.type == GameProtocol.MOVE) {
+        bot.game.dropInColumn(message.value, bot.opponentColor());
+      }
+      long think = thinkTime();
+      if (think == 0) {
+        act(bot);
+      }
+      else {
+        bot.dueNanos = now + think;
+        thinking.add(bot);
+      }
+    }
+
+    // intends to take the bot's turn: a restart once the game is over
+    // or by chance, otherwise a turn swap by chance, otherwise a move
+    private void act(Bot bot) throws IOException {
+      if (!bot.key.isValid()) {
+        return;
+      }
+      int roll = ThreadLocalRandom.current().nextInt(100);
+      if (bot.game.gameIsOver() || roll < restartPercent) {
+        bot.game.reset();
+        send(bot, GameProtocol.RESTART, 0);
+        RESTARTS.increment();
+      }
+      else if (roll < restartPercent + swapPercent
+          && bot.game.getMoveCount() > 0) {
+        send(bot, GameProtocol.SWAP_TURN, 0);
+        SWAPS.increment();
+      }
+      else {
+        int column = chooseColumn(bot.game);
+        bot.game.dropInColumn(column, bot.color);
+        send(bot, GameProtocol.MOVE, column);
+        MOVES.increment();
+      }
+      bot.sentNanos = System.nanoTime();
+      if (bot.pingSequence == 0) {
+        bot.pingSentNanos = bot.sentNanos;
+        bot.pingSequence = send(bot, GameProtocol.PING, 0);
+      }
+    }
+
+    // the script's column for this move if it is still playable,
+    // otherwise a random column which is not full
+    private int chooseColumn(GameState game) {
+      int moves = game.getMoveCount();
+      if (moves < script.length && script[moves] >= 0
+          && script[moves] < game.getCols()
+          && !game.columnIsFull(script[moves])) {
+        return script[moves];
+      }
+      int column;
+      do {
+        column = ThreadLocalRandom.current().nextInt(game.getCols());
+      } while (game.columnIsFull(column));
+      return column;
+    }
+
+    // writes one frame, keeping whatever the socket does not take for
+    // the next writable event. Returns the frame's sequence number.
+    private int send(Bot bot, byte type, int value) throws IOException {
+      if (bot.output.remaining() < GameProtocol.FRAME_LENGTH) {
+        throw new IOException("Server stopped reading");
+      }
+      GameProtocol.encode(bot.output, type, ++bot.outputSequence, value);
+      flush(bot);
+      return bot.outputSequence;
+    }
+
+    private void flush(Bot bot) throws IOException {
+      bot.output.flip();
+      bot.channel.write(bot.output);
+      bot.output.compact();
+      bot.key.interestOps(bot.output.position() > 0
+          ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+          : SelectionKey.OP_READ);
+    }
+
+    private void close(Bot bot) {
+      if (bot.key.isValid()) {
+        bot.key.cancel();
+        connected.decrementAndGet();
+        disconnected.incrementAndGet();
+      }
+      try {
+        bot.channel.close();
+      }
+      catch (IOException ioe) {
+        // nothing left to do with a bot that fails to close
+      }
+    }
+  }
+
+  // one simulated player
+  private static class Bot {
+    final SocketChannel channel;
+    final ByteBuffer input = ByteBuffer.allocate(
+        4 * (GameProtocol.LENGTH_FIELD + GameProtocol.MAX_BODY_LENGTH));
+    final ByteBuffer output = ByteBuffer.allocate(
+        64 * GameProtocol.FRAME_LENGTH);
+    final GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+    SelectionKey key;
+    GameState.colorType color;
+    int outputSequence = 0;
+    long dueNanos;
+    long sentNanos;
+    long pingSentNanos;
+    int pingSequence;
+
+    Bot(SocketChannel inChannel) {
+      channel = inChannel;
+    }
+
+    GameState.colorType opponentColor() {
+      return color == GameState.colorType.RED
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+  }
+}
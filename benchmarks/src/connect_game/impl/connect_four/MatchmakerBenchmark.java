@@ -0,0 +1,68 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Description: Benchmarks joining the Matchmaker, where every second
+ * join starts a match. All benchmark threads share one matchmaker, so
+ * running with more threads (e.g. "-t 4") shows whether the time per
+ * join stays flat as joins arrive from several cores at once.
+ *
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchmakerBenchmark {
+
+  // matchmakers shared by every benchmark thread. The matches made
+  // are dropped: the queue updates cannot be optimized away anyway.
+  @State(Scope.Benchmark)
+  public static class Shared {
+    final Object player = new Object();
+    final Matchmaker<Object> single = new Matchmaker<Object>(listener());
+    final Matchmaker<Object> bucketed =
+        new Matchmaker<Object>(listener(), 8, 100);
+
+    private static Matchmaker.Listener<Object> listener() {
+      return new Matchmaker.Listener<Object>() {
+        public boolean stillWaiting(Object waiting) {
+          return true;
+        }
+
+        public void startMatch(Object red, Object yellow) {
+        }
+      };
+    }
+  }
+
+  // each benchmark thread joins at a skill of its own
+  @State(Scope.Thread)
+  public static class Skill {
+    private static final AtomicInteger NEXT = new AtomicInteger();
+    final int skill = NEXT.getAndIncrement() * 100 % 800;
+  }
+
+  @Benchmark
+  public void join(Shared shared) {
+    shared.single.join(shared.player);
+  }
+
+  // joins spread over eight skill buckets
+  @Benchmark
+  public void joinBucketed(Shared shared, Skill skill) {
+    shared.bucketed.join(shared.player, skill.skill);
+  }
+}
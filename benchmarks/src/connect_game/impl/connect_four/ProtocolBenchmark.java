@@ -0,0 +1,62 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Description: Benchmarks a move making a round trip between two
+ * ClientServerSocket ends over loopback. A background thread echoes
+ * every message it receives, so one operation is a sendMessage and
+ * the matching receiveMessage on the benchmark thread.
+ *
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+  private static final int PORT = 45999;
+
+  private ClientServerSocket client;
+  private final GameMessage reply = new GameMessage();
+
+  @Setup
+  public void setUp() throws InterruptedException {
+    ClientServerSocket server = new ClientServerSocket("127.0.0.1", PORT);
+    Thread serverThread = new Thread(() -> {
+      server.startServer();
+      GameMessage message = new GameMessage();
+      while (true) {
+        server.receiveMessage(message);
+        server.sendMessage(message.type, message.value);
+      }
+    }, "echo");
+    // the echo thread blocks in a read when the fork ends
+    serverThread.setDaemon(true);
+    serverThread.start();
+
+    // gives the server socket time to start listening
+    Thread.sleep(500);
+    client = new ClientServerSocket("127.0.0.1", PORT);
+    client.startClient();
+  }
+
+  @Benchmark
+  public int moveRoundTrip() {
+    client.sendMessage(GameProtocol.MOVE, 3);
+    client.receiveMessage(reply);
+    return reply.value;
+  }
+}
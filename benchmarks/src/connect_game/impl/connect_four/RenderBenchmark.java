@@ -0,0 +1,66 @@
+package connect_game.impl.connect_four;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Description: Benchmarks drawing the board component of a mid-game
+ * board into an off-screen image: repainting the single square a chip
+ * was dropped into, and repainting the whole board as after a
+ * restart. Runs headless, so only the drawing itself is measured.
+ *
+ * */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+  private BoardComponent board;
+  private BufferedImage canvas;
+  private Graphics2D graphics;
+
+  @Setup
+  public void setUp() {
+    board = new BoardComponent(GameSession.ROWS, GameSession.COLS);
+    board.setState(GameStateBenchmark.play(GameStateBenchmark.MID_GAME));
+    board.setSize(board.getPreferredSize());
+    canvas = new BufferedImage(board.getWidth(), board.getHeight(),
+        BufferedImage.TYPE_INT_RGB);
+    graphics = canvas.createGraphics();
+  }
+
+  @TearDown
+  public void tearDown() {
+    graphics.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage paintDirtyCell() {
+    int size = ChipImages.CHIP_SIZE;
+    graphics.setClip(3 * size, 5 * size, size, size);
+    board.paint(graphics);
+    return canvas;
+  }
+
+  @Benchmark
+  public BufferedImage paintWholeBoard() {
+    graphics.setClip(0, 0, board.getWidth(), board.getHeight());
+    board.paint(graphics);
+    return canvas;
+  }
+}
@@ -0,0 +1,80 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class measures how the parallel solver scales
+ * with the number of threads. A fixed set of 6 x 7 positions (given as
+ * sequences of 1-based column numbers, the notation used by the usual
+ * connect four test suites) is solved from a fresh transposition
+ * table with 1, 2, 4, ... threads up to the number given as the first
+ * argument (all cores by default), and the time and speedup of each
+ * run are printed as a table.
+ *
+ * */
+public class SolverBenchmark {
+
+  // mid-game positions which each take from a fraction of a second to
+  // a few seconds to solve on a single core
+  private static final String[] POSITIONS = {
+    "44444433",
+    "4453343",
+    "43443555",
+    "3344443522",
+    "44455554221",
+    "4444443"
+  };
+
+  // a time budget far beyond any of the positions above
+  private static final long NO_LIMIT_MILLIS = 10L * 60 * 1000;
+
+  public static void main(String [] args) {
+    int maxThreads = Runtime.getRuntime().availableProcessors();
+    if (args.length > 0) {
+      maxThreads = Integer.parseInt(args[0]);
+    }
+
+    System.out.println("threads  time(ms)  speedup  positions/s");
+    long baseline = 0;
+    int threads = 1;
+    while (threads <= maxThreads) {
+      long[] result = run(threads);
+      long elapsed = Math.max(result[0], 1);
+      if (threads == 1) {
+        baseline = elapsed;
+      }
+      System.out.printf("%7d  %8d  %7.2f  %11d%n", threads, elapsed,
+          (double) baseline / elapsed, result[1] * 1000 / elapsed);
+
+      // doubles the thread count, finishing on the exact maximum
+      if (threads < maxThreads && threads * 2 > maxThreads) {
+        threads = maxThreads;
+      }
+      else {
+        threads *= 2;
+      }
+    }
+  }
+
+  // solves every position once with the given number of threads and
+  // returns the total time taken (ms) and the positions searched
+  private static long[] run(int threads) {
+    ParallelSolver solver = new ParallelSolver(GameSession.ROWS,
+        GameSession.COLS, GameSession.WINNING_SCORE, threads);
+    long nodes = 0;
+    long start = System.nanoTime();
+    for (String position : POSITIONS) {
+      GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+          GameSession.WINNING_SCORE);
+      GameState.colorType toMove = GameState.colorType.RED;
+      for (char move : position.toCharArray()) {
+        game.dropInColumn(move - '1', toMove);
+        toMove = (toMove == GameState.colorType.RED)
+            ? GameState.colorType.YELLOW : GameState.colorType.RED;
+      }
+      solver.chooseColumn(game, toMove, NO_LIMIT_MILLIS);
+      nodes += solver.getNodeCount();
+    }
+    long elapsed = (System.nanoTime() - start) / 1000000;
+    solver.shutdown();
+    return new long[] {elapsed, nodes};
+  }
+}
@@ -0,0 +1,297 @@
+package connect_game.impl.connect_four;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Description: Checks the Zobrist keys of GameBoard in three ways and
+ * exits with status 1 if any check fails:
+ *
+ * 1. Games of random moves are played on a GameState and on a
+ *    LargeGameState of the same size, and after every move both
+ *    incrementally kept keys must equal Zobrist.compute, and the
+ *    canonical keys must equal those of the mirrored game.
+ * 2. Every position of a 6 x 7 game up to the given ply (still in
+ *    play, i.e. without a line of four) is enumerated exactly, and the
+ *    Zobrist keys of those different positions, then the canonical
+ *    keys of the different mirror image pairs, must not collide.
+ * 3. A stream of positions from random games on a 1000 x 1000 board
+ *    (billions by default) is hashed the same way the boards hash
+ *    them. Positions are only counted from the 8th move on, where two
+ *    random games almost never reach the same position. For three
+ *    28 bit windows of the key, the number of different values seen
+ *    must match the birthday expectation M (1 - e^(-N/M)) for N keys
+ *    and M = 2^28 values, within five standard deviations; a biased
+ *    or correlated key fills fewer values. The first 2^24 keys are
+ *    also checked for full 64 bit collisions of their canonical keys.
+ *    (The windows are taken from the plain key: the canonical key is
+ *    the smaller of two, so its top bits lean towards 0.)
+ *
+ * With 64 bit keys, the chance of any collision among the few million
+ * positions of check 2 is about one in a million.
+ *
+ * Arguments: [last ply=11] [random positions=1000000000] [seed=1]
+ *
+ * */
+public class ZobristCheck {
+
+  private static final int ROWS = 6;
+  private static final int COLS = 7;
+  private static final int WINNING_SCORE = 4;
+
+  private static final int LARGE_SIZE = 1000;
+  private static final int FIRST_COUNTED_MOVE = 8;
+  private static final int GAME_LENGTH = 400;
+
+  private static final int WINDOW_BITS = 28;
+  private static final int[] WINDOW_SHIFTS = {0, 18, 36};
+  private static final int STORED_KEYS = 1 << 24;
+
+  private final int height = ROWS + 1;
+  private final long bottomMask = OpeningBook.bottomMask(ROWS, COLS);
+  private final Solver helper = new Solver(ROWS, COLS, WINNING_SCORE,
+      new TranspositionTable(1));
+
+  public static void main(String [] args) {
+    int lastPly = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+    long positions = args.length > 1 ? Long.parseLong(args[1]) : 1000000000L;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+    ZobristCheck check = new ZobristCheck();
+    boolean passed = check.incrementalKeys(new SplittableRandom(seed), 20000);
+    passed &= check.exhaustive(lastPly);
+    passed &= randomStream(new SplittableRandom(seed + 1), positions);
+    System.out.println(passed ? "All checks passed" : "FAILED");
+    System.exit(passed ? 0 : 1);
+  }
+
+  // method intends to play random games on both board implementations
+  // and compare their keys with keys computed from scratch
+  boolean incrementalKeys(SplittableRandom random, int games) {
+    long start = System.nanoTime();
+    long mismatches = 0;
+    long moves = 0;
+    for (int game = 0; game < games; game++) {
+      int rows = 1 + random.nextInt(7);
+      int cols = 1 + random.nextInt(8);
+      GameBoard small = new GameState(rows, cols, WINNING_SCORE);
+      GameBoard large = new LargeGameState(rows, cols, WINNING_SCORE);
+      GameBoard mirror = new LargeGameState(rows, cols, WINNING_SCORE);
+      GameState.colorType turn = GameState.colorType.RED;
+      while (!small.isFull()) {
+        int column;
+        do {
+          column = random.nextInt(cols);
+        } while (small.columnIsFull(column));
+        small.dropInColumn(column, turn);
+        large.dropInColumn(column, turn);
+        mirror.dropInColumn(cols - 1 - column, turn);
+        moves++;
+        long key = Zobrist.compute(small);
+        if (small.zobristKey() != key || large.zobristKey() != key
+            || small.canonicalZobristKey() != large.canonicalZobristKey()
+            || mirror.canonicalZobristKey() != small.canonicalZobristKey()
+            || mirror.zobristKey() != Zobrist.compute(mirror)) {
+          mismatches++;
+        }
+        turn = (turn == GameState.colorType.RED)
+            ? GameState.colorType.YELLOW : GameState.colorType.RED;
+      }
+    }
+    System.out.printf("Incremental keys: %d games, %d moves, %d mismatches"
+        + " (%.1f s)%n", games, moves, mismatches,
+        (System.nanoTime() - start) / 1e9);
+    return mismatches == 0;
+  }
+
+  // method intends to enumerate every position up to the last ply and
+  // count the Zobrist keys shared by different positions
+  boolean exhaustive(int lastPly) {
+    long start = System.nanoTime();
+    long[][] levels = new long[lastPly + 1][];
+    levels[0] = new long[] {bottomMask};
+    int total = 1;
+    for (int ply = 1; ply <= lastPly; ply++) {
+      levels[ply] = children(levels[ply - 1], ply - 1);
+      total += levels[ply].length;
+    }
+
+    long[] keys = new long[total];
+    long[] canonical = new long[total];
+    int pairs = 0;
+    int count = 0;
+    long mirrorMismatches = 0;
+    for (long[] level : levels) {
+      for (long position : level) {
+        long key = zobristOf(position, false);
+        long mirroredKey = zobristOf(position, true);
+        if (mirroredKey != zobristOf(mirrorOf(position), false)) {
+          mirrorMismatches++;
+        }
+        keys[count++] = key;
+        // one of each mirror image pair: the one whose exact key is
+        // the canonical one
+        if (OpeningBook.canonicalKey(position, ROWS, COLS) == position) {
+          canonical[pairs++] = Zobrist.canonical(key, mirroredKey);
+        }
+      }
+    }
+    long collisions = collisions(keys, count);
+    long canonicalCollisions = collisions(canonical, pairs);
+    System.out.printf("Exhaustive %d x %d up to ply %d: %d positions, %d"
+        + " colliding keys; %d mirror pairs, %d colliding canonical keys;"
+        + " %d mirror mismatches (%.1f s)%n", ROWS, COLS, lastPly, count,
+        collisions, pairs, canonicalCollisions, mirrorMismatches,
+        (System.nanoTime() - start) / 1e9);
+    return collisions == 0 && canonicalCollisions == 0
+        && mirrorMismatches == 0;
+  }
+
+  // returns the sorted keys (red chips | mask + bottom) of every
+  // position one move on from the given ones, except those where that
+  // move won the game. Red moves on even plies.
+  private long[] children(long[] parents, int ply) {
+    long[] found = new long[parents.length * COLS];
+    int count = 0;
+    for (long parent : parents) {
+      long mask = maskOf(parent);
+      long red = parent & mask;
+      long current = (ply % 2 == 0) ? red : red ^ mask;
+      long winning = helper.winningPositions(current, mask);
+      long possible = helper.possibleMoves(mask);
+      while (possible != 0) {
+        long move = possible & -possible;
+        possible ^= move;
+        if ((move & winning) == 0) {
+          long childRed = (ply % 2 == 0) ? red | move : red;
+          found[count++] = childRed | ((mask | move) + bottomMask);
+        }
+      }
+    }
+    Arrays.sort(found, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || found[unique - 1] != found[i]) {
+        found[unique++] = found[i];
+      }
+    }
+    return Arrays.copyOf(found, unique);
+  }
+
+  // in each column, the highest bit of the key sits just above the
+  // column's chips, and the bits below it are set for red chips
+  private long maskOf(long position) {
+    long column = (1L << height) - 1;
+    long mask = 0;
+    for (int c = 0; c < COLS; c++) {
+      long top = Long.highestOneBit((position >>> (c * height)) & column);
+      mask |= (top - 1) << (c * height);
+    }
+    return mask;
+  }
+
+  private long mirrorOf(long position) {
+    long column = (1L << height) - 1;
+    long mirrored = 0;
+    for (int c = 0; c < COLS; c++) {
+      long bits = (position >>> (c * height)) & column;
+      mirrored |= bits << ((COLS - 1 - c) * height);
+    }
+    return mirrored;
+  }
+
+  // the Zobrist key of the position, or of its mirror image
+  private long zobristOf(long position, boolean mirrored) {
+    long column = (1L << height) - 1;
+    long key = 0;
+    for (int c = 0; c < COLS; c++) {
+      long bits = (position >>> (c * height)) & column;
+      int chips = 63 - Long.numberOfLeadingZeros(bits);
+      for (int h = 0; h < chips; h++) {
+        GameState.colorType color = ((bits >>> h) & 1) != 0
+            ? GameState.colorType.RED : GameState.colorType.YELLOW;
+        key ^= mirrored ? Zobrist.mirrored(c, h, COLS, color)
+            : Zobrist.square(c, h, color);
+      }
+    }
+    return key;
+  }
+
+  // sorts the first count keys and returns how many equal the one
+  // before them
+  private static long collisions(long[] keys, int count) {
+    Arrays.sort(keys, 0, count);
+    long collisions = 0;
+    for (int i = 1; i < count; i++) {
+      if (keys[i] == keys[i - 1]) {
+        collisions++;
+      }
+    }
+    return collisions;
+  }
+
+  // method intends to hash a stream of positions from random games on
+  // a large board and compare how the keys fill truncated windows with
+  // what uniformly random keys would do. Only the column heights are
+  // kept, so a position costs two square keys rather than a full drop.
+  static boolean randomStream(SplittableRandom random, long positions) {
+    long start = System.nanoTime();
+    long[][] windows = new long[WINDOW_SHIFTS.length][1 << (WINDOW_BITS - 6)];
+    long windowMask = (1L << WINDOW_BITS) - 1;
+    long[] stored = new long[(int) Math.min(positions, STORED_KEYS)];
+    int[] heights = new int[LARGE_SIZE];
+    long seen = 0;
+    while (seen < positions) {
+      Arrays.fill(heights, 0);
+      long key = 0;
+      long mirroredKey = 0;
+      GameState.colorType turn = GameState.colorType.RED;
+      for (int move = 1; move <= GAME_LENGTH && seen < positions; move++) {
+        int column = random.nextInt(LARGE_SIZE);
+        int h = heights[column]++;
+        key ^= Zobrist.square(column, h, turn);
+        mirroredKey ^= Zobrist.mirrored(column, h, LARGE_SIZE, turn);
+        turn = (turn == GameState.colorType.RED)
+            ? GameState.colorType.YELLOW : GameState.colorType.RED;
+        if (move < FIRST_COUNTED_MOVE) {
+          continue;
+        }
+        for (int w = 0; w < WINDOW_SHIFTS.length; w++) {
+          int value = (int) ((key >>> WINDOW_SHIFTS[w]) & windowMask);
+          windows[w][value >>> 6] |= 1L << value;
+        }
+        if (seen < stored.length) {
+          stored[(int) seen] = Zobrist.canonical(key, mirroredKey);
+        }
+        seen++;
+      }
+    }
+
+    // expected number of filled values and its standard deviation for
+    // N uniformly random keys over M values
+    double values = 1L << WINDOW_BITS;
+    double load = seen / values;
+    double empty = Math.exp(-load);
+    double expected = values * (1 - empty);
+    double deviation = Math.sqrt(values * empty
+        - values * (1 + load) * empty * empty);
+    boolean passed = true;
+    System.out.printf("Random stream: %d positions on %d x %d (%.1f s)%n",
+        seen, LARGE_SIZE, LARGE_SIZE, (System.nanoTime() - start) / 1e9);
+    for (int w = 0; w < WINDOW_SHIFTS.length; w++) {
+      long filled = 0;
+      for (long word : windows[w]) {
+        filled += Long.bitCount(word);
+      }
+      double sigmas = (filled - expected) / deviation;
+      passed &= Math.abs(sigmas) <= 5;
+      System.out.printf("  bits %d-%d: %d values filled, %.0f expected,"
+          + " %+.2f sigma%n", WINDOW_SHIFTS[w],
+          WINDOW_SHIFTS[w] + WINDOW_BITS - 1, filled, expected, sigmas);
+    }
+    long collisions = collisions(stored, stored.length);
+    System.out.printf("  %d colliding 64 bit keys among the first %d%n",
+        collisions, stored.length);
+    return passed && collisions == 0;
+  }
+}
@@ -0,0 +1,147 @@
+package connect_game.impl.connect_four;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.JComponent;
+
+/*
+ * Description: Draws the whole board as a single component, straight
+ * from the game state, instead of keeping a label per square. Only the
+ * squares inside the clip are drawn, so a repaint of the one square a
+ * chip landed in copies a single image. A click anywhere in a column
+ * selects that column, which replaces the row of drop buttons; clicks
+ * are ignored while the component is disabled or the column is full.
+ * Boards too wide or tall for full-size chips get smaller squares,
+ * down to MIN_CELL_SIZE, and are meant to be shown in a scroll pane;
+ * since only the clip is drawn, a 1000 x 1000 board paints no more
+ * squares than fit in the window.
+ *
+ * */
+public class BoardComponent extends JComponent {
+
+  private static final long serialVersionUID = 1L;
+
+  // intends to notify the board when the player picks a column
+  public interface ColumnListener {
+    void columnSelected(int column);
+  }
+
+  private final int rows;
+  private final int cols;
+  // squares shrink so that the board fits in about this many pixels
+  static final int MAX_BOARD_PIXELS = 1200;
+  static final int MIN_CELL_SIZE = 12;
+
+  private final int cellSize;
+
+  // the chip images by colorType ordinal, at the size of a square
+  private final Image[] chips =
+      new Image[GameState.colorType.values().length];
+  private GameBoard state;
+  private ColumnListener listener;
+
+  private static final Metrics.Histogram PAINT_LATENCY =
+      Metrics.histogram("board.paint");
+
+  // a repaint the time of which is measured until it has been drawn:
+  // the histogram to record into and when the update began
+  private Metrics.Histogram pendingLatency;
+  private long pendingSinceNanos;
+
+  public BoardComponent(int inRows, int inCols) {
+    rows = inRows;
+    cols = inCols;
+    cellSize = Math.max(MIN_CELL_SIZE, Math.min(ChipImages.CHIP_SIZE,
+        MAX_BOARD_PIXELS / Math.max(rows, cols)));
+    for (GameState.colorType color : GameState.colorType.values()) {
+      chips[color.ordinal()] = (cellSize == ChipImages.CHIP_SIZE)
+          ? ChipImages.get(color).getImage()
+          : ChipImages.scaled(color, cellSize);
+    }
+    setPreferredSize(new Dimension(cols * cellSize, rows * cellSize));
+    setOpaque(true);
+
+    // translates a click into the column under the mouse
+    addMouseListener(new MouseAdapter() {
+      public void mousePressed(MouseEvent click) {
+        int column = columnAt(click.getX());
+        if (isEnabled() && listener != null && column >= 0
+            && (state == null || !state.columnIsFull(column))) {
+          listener.columnSelected(column);
+        }
+      }
+    });
+  }
+
+  // the game state to draw; until one is set the board is empty
+  public void setState(GameBoard inState) {
+    state = inState;
+    repaint();
+  }
+
+  public void setColumnListener(ColumnListener inListener) {
+    listener = inListener;
+  }
+
+  // returns the column at the given x coordinate, or -1 if there is
+  // none
+  public int columnAt(int x) {
+    int column = x / cellSize;
+    return (x >= 0 && column < cols) ? column : -1;
+  }
+
+  // intends to repaint only the square at (row, column), e.g. after
+  // a chip has been dropped into it
+  public void repaintCell(int row, int column) {
+    repaint(column * cellSize, row * cellSize, cellSize, cellSize);
+  }
+
+  // intends to repaint the square and record, once it has been drawn,
+  // the time since the given System.nanoTime reading. While one such
+  // repaint is waiting, the earlier start is kept.
+  public void repaintCell(int row, int column, Metrics.Histogram latency,
+      long sinceNanos) {
+    if (pendingLatency == null) {
+      pendingLatency = latency;
+      pendingSinceNanos = sinceNanos;
+    }
+    repaintCell(row, column);
+  }
+
+  // method intends to draw every square inside the clip with the
+  // shared image of its chip color
+  protected void paintComponent(Graphics graphics) {
+    long start = System.nanoTime();
+    Rectangle clip = graphics.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, getWidth(), getHeight());
+    }
+    // the area around the board when the frame is stretched
+    graphics.setColor(getBackground());
+    graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+    int firstColumn = Math.max(0, clip.x / cellSize);
+    int lastColumn = Math.min(cols - 1, (clip.x + clip.width - 1) / cellSize);
+    int firstRow = Math.max(0, clip.y / cellSize);
+    int lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / cellSize);
+
+    for (int r = firstRow; r <= lastRow; r++) {
+      for (int c = firstColumn; c <= lastColumn; c++) {
+        GameState.colorType color = (state == null)
+            ? GameState.colorType.UNKNOWN : state.getColor(r, c);
+        graphics.drawImage(chips[color.ordinal()], c * cellSize,
+            r * cellSize, null);
+      }
+    }
+    PAINT_LATENCY.recordSince(start);
+    if (pendingLatency != null) {
+      pendingLatency.recordSince(pendingSinceNanos);
+      pendingLatency = null;
+    }
+  }
+}
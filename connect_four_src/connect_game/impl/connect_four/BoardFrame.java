@@ -1,3 +1,5 @@
+package connect_game.impl.connect_four;
+
 /*
  * Description: This class creates the visual environment for the
  * connect four board and the functionality that allows the board to
@@ -5,26 +7,25 @@
  * the client to keep updated with the others' changes. This class
  * creates an expandable two-player connect four environment in which
  * two players can play against each other over multiple machines in 
- * a real-time manner. The board established is a 6 x 7 grid of labels,
- * with buttons at the top of each column such that a player may 
- * manually drop a button into the board
+ * a real-time manner. The board established is a 6 x 7 grid drawn by
+ * a single BoardComponent, and a player may manually drop a chip into
+ * the board by clicking on a column. Two-player boards may also be
+ * given other dimensions, up to a big Connect-K board which scrolls
+ * inside the frame.
  * */
 import java.awt.BorderLayout;
-import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.net.URL;
-import java.util.ArrayList;
+import java.util.List;
 
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.SwingWorker;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
 public class BoardFrame extends JFrame {
   
@@ -35,37 +36,28 @@ public class BoardFrame extends JFrame {
   private JButton restartButton;
   private JButton swapTurn;
   
-  // intends to set up the grids which will be used to keep 
-  // track of game values and display the game.
-  private colorType[][] grid;
-  private JLabel[][] imageGrid;
+  // intends to set up the component which will be used to
+  // display the game.
+  private BoardComponent boardView;
   
-  // establishing the sizes and winning conditions in constant
-  // form intends to make the game more expandable as these 
-  // conditions can be changed here and alter the rules of the 
-  // game.
-  private final int ROWS = 6;
-  private final int COLS = 7;
-  private final int WINNING_SCORE = 4;
+  // boards with more rows or columns than this are shown in a
+  // scroll pane of the given size
+  private static final int SCROLL_SIDE = 20;
+  private static final Dimension SCROLL_VIEW = new Dimension(900, 700);
   
-  // the socket will be used to create a connection between the 
-  // game server and the game client
-  private ClientServerSocket socket; 
-
-  // enum serves to represent the color type of a given square on
-  // the board. This will be used to keep track of game conditions
-  enum colorType {UNKNOWN, RED, YELLOW};
+  // the session keeps track of the state of the game and talks to
+  // the other side over the socket between the game server and the
+  // game client (or the computer player in a single-player game).
+  // column inputs will be sent and received, allowing the players'
+  // boards to be constantly updated.
+  private GameSession session;
 
-  // this segment of attributes intends to keep track of the state
-  // of the game. column inputs will be sent and received, allowing
-  // the players' boards to be constantly updated. The displayed
-  // message condition ensures that a victory is celebrated once
-  // per game
-  private String currentColor = "";
-  private String receivedCol = "";
-  private boolean msgDisplayed = false;
-  
-  private ArrayList<JButton> dropButtons;
+  // from a click on a column to the chip being drawn, and from the
+  // arrival of the other side's move to its chip being drawn
+  private static final Metrics.Histogram CLICK_TO_PAINT =
+      Metrics.histogram("board.clickToPaint");
+  private static final Metrics.Histogram REMOTE_MOVE_TO_PAINT =
+      Metrics.histogram("board.remoteMoveToPaint");
   
   // Intends to ultimately display player info (if red/yellow is
   // starting or currently moving, who's waiting for the other etc.) 
@@ -74,22 +66,27 @@ public class BoardFrame extends JFrame {
   
   // Declares the panels which will be used for the organization
   // of the GUI layout:
-  private JPanel boardDropCols;
-  private JPanel board;
   private JPanel restartPanel;
   private JPanel playerInfo;
   
   
   // Contains the information for the client (which needs an IP)
   public BoardFrame(String ipAddress, int portNumber) {
+    this(ipAddress, portNumber, GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+  }
+
+  // a client playing on a board of the given size, which must match
+  // the server's
+  public BoardFrame(String ipAddress, int portNumber, int rows, int cols,
+      int winningScore) {
     super("Play Connect Four!");
     // GUI related organization is categorized in this section 
     // before the networks as a way of ensuring that the GUI 
     // is fully established before starting any of the communication
     // aspects of the game.
-    setUp();
-    disableButtons(dropButtons);
-    currentColor = "yellow";
+    setUp(rows, cols);
+    disableButtons();
     playerInfoLabel.setText("Player: YELLOW");
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);    
     pack();
@@ -99,22 +96,31 @@ public class BoardFrame extends JFrame {
     // Intends to establish the networking-related aspect of the
     // project. The clientserversocket class provides a means to
     // communicate between the server and the client through a 
-    // relaying of string messages. The server is started last,
+    // relaying of game messages. The server is started last,
     // once the GUI and the socket is set up.
-    socket = new ClientServerSocket(ipAddress, portNumber);
-    socket.startClient();
-    new ButtonSwingWorker().execute();
+    ClientServerSocket clientSocket =
+        new ClientServerSocket(ipAddress, portNumber);
+    clientSocket.startClient();
+    session = new GameSession(clientSocket, GameState.colorType.YELLOW,
+        rows, cols, winningScore);
+    boardView.setState(session.getState());
+    startReader();
   }
   
   // Contains the information for the server (which needs a port)
   public BoardFrame(int portNumber) {
+    this(portNumber, GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+  }
+
+  // a server playing on a board of the given size
+  public BoardFrame(int portNumber, int rows, int cols, int winningScore) {
     // GUI related organization is categorized in this section 
     // before the networks as a way of ensuring that the GUI 
     // is fully established before starting any of the communication
     // aspects of the game.
     super("Play Connect Four!");
-    setUp();
-    currentColor = "red";
+    setUp(rows, cols);
     playerInfoLabel.setText("Player: RED");
     playerTurnLabel.setText("Status: Good to go!");
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);    
@@ -124,34 +130,47 @@ public class BoardFrame extends JFrame {
     // Intends to establish the networking-related aspect of the
     // project. The clientserversocket class provides a means to
     // communicate between the server and the client through a 
-    // relaying of string messages. The server is started last,
+    // relaying of game messages. The server is started last,
     // once the GUI and the socket is set up.
-    socket = new ClientServerSocket("127.0.0.1", portNumber);
-    socket.startServer();
- 
+    ClientServerSocket serverSocket =
+        new ClientServerSocket("127.0.0.1", portNumber);
+    serverSocket.startServer();
+    session = new GameSession(serverSocket, GameState.colorType.RED,
+        rows, cols, winningScore);
+    boardView.setState(session.getState());
+    startReader();
   }
   
-  public void setUp() {
+  // Contains the information for a single-player game, where the
+  // player is red and moves first against the computer
+  public BoardFrame(ComputerPlayer computer) {
+    super("Play Connect Four!");
+    setUp(computer.getRows(), computer.getCols());
+    playerInfoLabel.setText("Player: RED");
+    playerTurnLabel.setText("Status: Good to go!");
+    setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);    
+    pack();
+    setVisible(true);
     
-    // This segment of code intends to create the actual images
-    // which icons will be saved onto during the game. This 
-    // intends to create a grid of JLabels so that board square
-    // images may be placed over them
-    imageGrid = new JLabel[ROWS][COLS];
-    for (int r = 0; r < ROWS; r++) {
-      for (int c = 0; c < COLS; c++) {
-        imageGrid[r][c] = new JLabel();
-      }
-    }
+    session = new GameSession(computer, GameState.colorType.RED,
+        computer.getRows(), computer.getCols(),
+        computer.getWinningScore());
+    boardView.setState(session.getState());
+    startReader();
+  }
+  
+  public void setUp(int rows, int cols) {
+    
+    // This segment of code intends to create the component which
+    // draws the board squares, sized by the rules of the game
+    boardView = new BoardComponent(rows, cols);
     
     // Intends to establish the GUI labels which will display a 
     // player's given information.
     playerTurnLabel = new JButton();
     playerInfoLabel = new JButton();
     
-    // creates the layouts for the drop-down buttons and the
-    // restart button at the bottom
-    boardDropCols = new JPanel(new FlowLayout());
+    // creates the layout for the restart button at the bottom
     restartPanel = new JPanel(new FlowLayout());
     
     // creates the flow layout for the player information
@@ -159,345 +178,79 @@ public class BoardFrame extends JFrame {
     playerInfo = new JPanel(new FlowLayout());
     playerInfo.add(playerInfoLabel);
     playerInfo.add(playerTurnLabel);
-    
-    // Intends to create a list of buttons such that they do not
-    // need to each be accessed individually 
-    dropButtons = new ArrayList<JButton>();
-    
-    // Establishes the text of the initialized buttons.
-    // Intends to fill a list of drop-down buttons into a 
-    // collection so that operations can be done to each of
-    // the drop-down buttons without accessing each individually.
-    for (int c = 0; c < COLS; c++) {
-      dropButtons.add(new JButton("Drop"));
-    }
 
     restartButton = new JButton("RESTART GAME");
     swapTurn = new JButton("SWAP TURN");
-      
-   
  
     // adds the restartButton to a panel which goes into the
     // board layout
     restartPanel.add(restartButton);
     restartPanel.add(swapTurn);
     
-    // Gives all of the buttons a red color when enabled. An
-    // additional touch to allow red/yellow to know if they're
-    // whose turn it is or if they're starting  (because these 
-    // buttons become empty in color if the player's waiting).
-    for (JButton button : dropButtons) {
-      button.setForeground(Color.red);
-      boardDropCols.add(button);
-    }    
-    
-    // Establishes the layout for the drop-down buttons and the 
-    // physical board itself
-    board = new JPanel(new GridLayout(ROWS + 1, COLS));    
-    
-    // Intends to initialize the values of the board to empty 
-    // spots (all white images, all unknown colors in the
-    // representative enum colorType grid).
-    initializeBoard();
-    
     // Intends to create the GUI's "big picture" image, existing
     // of the game board and the necessary buttons
     setLayout(new BorderLayout());
     add(playerInfo, BorderLayout.NORTH);
-    add(board, BorderLayout.CENTER);
+    if (rows > SCROLL_SIDE || cols > SCROLL_SIDE) {
+      JScrollPane scroller = new JScrollPane(boardView);
+      scroller.setPreferredSize(SCROLL_VIEW);
+      add(scroller, BorderLayout.CENTER);
+    }
+    else {
+      add(boardView, BorderLayout.CENTER);
+    }
     add(restartPanel, BorderLayout.SOUTH);
 
-    // creates the action listener which will listen to the 
-    // functionality
+    // creates the listener which will listen to the column
+    // clicks and button functionality
     ButtonFunctionality dropListener = new ButtonFunctionality();
     
-    for (JButton button : dropButtons) {
-      button.addActionListener(dropListener);
-    }
+    boardView.setColumnListener(dropListener);
     restartButton.addActionListener(dropListener); 
     swapTurn.addActionListener(dropListener);
     
   }
   
-  // this method intends to parse together a URL in order to 
-  // set the color of a given icon depending on the color
-  // parameter passed into the function
-  public void setColor(JLabel label, String color) {
-    URL url = getClass().getResource("/images/" + color + ".jpg");
-    // changes the color of the specific JLabel
-    label.setIcon(new ImageIcon(url));
-  }
-  
-  // intends to reset the board's GUI and functionality (the 
-  // enum grid will have all unknown values, drop buttons
-  // will be added, and labels will all be white
+  // intends to redraw the whole board after the session has
+  // emptied the game state. Nothing is added to or removed from
+  // the frame, so restarts cost the same every time.
   public void initializeBoard() {
-    for (JButton button : dropButtons) {
-      board.add(button);
-    }
-    // intends to initialize the grid which will keep track of
-    // the moves that have been made
-    grid = new colorType[ROWS][COLS];
-    
-    for (int r = 0; r < ROWS; r++) {
-      for (int c = 0; c < COLS; c++) {
-        
-        // intends to set all labels/grid values to their
-        // default/unknown settings
-        grid[r][c] = colorType.UNKNOWN;
-        setColor(imageGrid[r][c], "white");
-        board.add(imageGrid[r][c]);
-        
-      }
-    }
+    boardView.repaint();
   }  
   
-  // function intends to enable each of the buttons, excluding
-  // buttons in which the column is already filled
-  public void enableButtons(ArrayList<JButton> buttons) {
+  // function intends to let the player click on the board again.
+  // Full columns are rejected by the board component itself.
+  public void enableButtons() {
     // tells the player they are able to make a move once
     // their buttons are re-enabled for gameplay
     playerTurnLabel.setText("Status: Good to go!");
-    for (int i = 0; i < buttons.size(); i++) {
-      // intends to check that all buttons which would lead
-      // to dropping a chip into a full column are selected
-      // to be false
-      if (columnIsFull(i, ROWS)) {
-        buttons.get(i).setEnabled(false);
-      }
-      else {
-        buttons.get(i).setEnabled(true);
-      }
-    }
+    boardView.setEnabled(true);
   }
   
-  // intends to ensure that all buttons are disabled 
-  public void disableButtons(ArrayList<JButton> buttons) {
+  // intends to ensure that clicks on the board are ignored
+  public void disableButtons() {
 
     // sets the player's turn information to waiting while
-    // the buttons are disabled
+    // the board is disabled
     playerTurnLabel.setText("Status: Waiting... ");
-    for (JButton button : buttons) { 
-      button.setEnabled(false);
-    }
+    boardView.setEnabled(false);
   }
   
-  // function intends to place a chip at the nearest available column
-  // space on the board. Finds the first unknown grid space, sets the
-  // color at the space, and places the associated color value into
-  // the grid.
-  public void dropInColumn(int totalRows, Integer column, String colorName) {
-    for (int r = totalRows - 1; r >= 0; r--) {
-      if (grid[r][column] == colorType.UNKNOWN) {
-        if (colorName.equals("red")) {
-          grid[r][column] = colorType.RED;
-        }
-        else if (colorName.equals("yellow")) {
-          grid[r][column] = colorType.YELLOW;
-        }
-      // instantiates board chip of location (r, c)  
-      setColor(imageGrid[r][column], colorName);
-      return;
-      }
+  // function intends to redraw the square of a chip the session
+  // has placed at (row, column). A row of -1 means the column was
+  // already full and nothing was placed.
+  public void showChip(int row, int column) {
+    if (row >= 0) {
+      boardView.repaintCell(row, column);
     }
   }  
-  
-  // function intends to check if a column is fully filled
-  boolean columnIsFull(int column, int totalRows) {
-    for (int r = 0; r < totalRows; r++) {
-      if (grid[r][column] == colorType.UNKNOWN) {
-        return false;
-      }
-    }
-    return true;
-  } 
-  
-  // function intends to check for a horizontal win in a 
-  // given row
-  boolean isWinInRow
-  (colorType[][] board, int row, int cols, colorType color) {
-    int count = 0; 
-    // intends to increment a counter for each consecutive
-    // value seen within a given row. Counter resets when 
-    // next move is not consecutive.
-    for (int c = 0; c < cols; c++) {
-      if (board[row][c] == color) {
-        count++;
-      }
-      else {
-        count = 0;
-      }
-      if (count == WINNING_SCORE) {
-        return true;
-      }
-    }
-    return false;
-  }
-  
-  // method intends to ensure that a vertical win within a given
-  // column is noticed
-  boolean isWinInCol
-  (colorType[][] board, int rows, int col, colorType color) {
-    int count = 0; 
-    // intends to increment a counter each time a consecutive
-    // value is found: will reset when no consecutive value
-    // is seen
-    for (int r = 0; r < rows; r++) {
-      if (board[r][col] == color) {
-        count++;
-      }
-      else {
-        count = 0;
-      }
-      if (count == WINNING_SCORE) {
-        return true;
-      }
-    }
-    return false;
-  }
-  
-  // method intends to check that there are no negative diagonal
-  // wins. It performs diagonalization checks for each grid square (r,c) 
-  // on the board. A for loop keeps track of a counter while the nested
-  // r/c loops ensure that the function checks each row/col spot
-  // The winning counter in the checking loop intends to make
-  // the game potentially more expandable.
-  boolean isWinNegDiagonal
-  (colorType[][] board, int rows, int cols, colorType color) {
-    
-    // loop conditions set up to rows - (winningscore - 1) 
-    // because testing diagonals that go out of bounds would
-    // be superfluous
-    for (int r = 0; r + (WINNING_SCORE - 1) < rows; r++) {
-      for (int c = 0; c + (WINNING_SCORE - 1) < cols; c++) {
-        int count = 1;
-        // loop controlling the counter
-        for (int offset = 1; offset < WINNING_SCORE; offset++) {
-          if (board[r][c] == color && 
-              board[r][c] == board[r + offset][c + offset]) {
-              count++;
-          }
-        }
-        // intends to return that a diagonal win exists if
-        // the counter matches the winning score
-        if (count == WINNING_SCORE) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-  
-  // method intends to check that there are no positive diagonal
-  // wins. It does so with a tri-nested loop, checking each 
-  // consecutive diagonal square within the valid bounds of the
-  // board. A for loop keeps track of a counter while the nested
-  // r/c loops ensure that the function checks each row/col spot.
-  // The counter condition (WINNING_SCOERE) within the checking 
-  // loop intends to potentially make the board more expandable.
-  boolean isWinPosDiagonal
-  (colorType[][] board, int rows, int cols, colorType color) {
-    // rows start at a positive value 
-    for (int r = (rows - WINNING_SCORE + 1); r < rows; r++) {
-      for (int c = 0; c < (cols - WINNING_SCORE + 1); c++) {
-        int count = 1;
-        // for loop involving offsets comparing to the first
-        // square found of the color the function is searching
-        // for. Increments counter when offset squares equal
-        // the first square, and are therefore consecutive
-        for (int offset = 1; offset < WINNING_SCORE; offset++) {
-          if (board[r][c] == color && 
-              board[r - offset][c + offset] == board[r][c]) {
-              count++;
-          }
-        }
-        // intends to return true if the count matches the winning score
-        if (count == WINNING_SCORE) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-  
-  // method intends to count all of the unknown squares remaining in
-  // the grid of values
-  int countUnknownSquares(colorType[][] board, int rows, int cols) {
-    int unknownSquares = 0;
-    for (int r = 0; r < rows; r++) {
-      for (int c = 0; c < cols; c++) {
-        // increments each grid spot with an unknown value
-        if (board[r][c] == colorType.UNKNOWN) {
-          unknownSquares++;
-        }
-      }
-    }
-    return unknownSquares;
-  }
-  
-  // method intends to check that no wins have occurred yet on
-  // the board by utilizing the prior functions which analyze
-  // smaller portions of the board. This function amalgamates
-  // each of the board-checking functions and ensures that 
-  // a victory has not occurred yet.
-  boolean boardHasNoWins(colorType[][] board, int rows, int cols) {
-    
-    // intends to insure no diagonal win of either color has occurred
-    if (isWinPosDiagonal(board, rows, cols, colorType.RED) || 
-        isWinPosDiagonal(board, rows, cols, colorType.YELLOW) || 
-        isWinNegDiagonal(board, rows, cols, colorType.RED)|| 
-        isWinNegDiagonal(board, rows, cols, colorType.YELLOW)) {
-      return false;
-    }
-    
-    // intends to ensure no horizontal row wins have occurred
-    // for either color
-    for (int r = 0; r < rows; r++) {
-      if (isWinInRow(board, r, cols, colorType.RED)) {
-        return false;
-      }
-      if (isWinInRow(board, r, cols, colorType.YELLOW)) {
-        return false;
-      }
-    }
-    // intends to ensure no vertical column wins have occurred
-    // for either color
-    for (int c = 0; c < cols; c++) {
-      if (isWinInCol(board, rows, c, colorType.RED)) {
-        return false;
-      }
-      if (isWinInCol(board, rows, c, colorType.YELLOW)) {
-        return false;
-      }
-    }
-    return true;
-  }
-  
-  // intends to ensure that the game has satisfied a current
-  // win or draw condition. If a board contains no winning 
-  // connections, the game will end on a draw if there are 
-  // no squares left to play.
-  boolean gameIsOver(colorType[][] board, int rows, int cols) {
-    if (countUnknownSquares(board, rows, cols) == 0 ||
-        !boardHasNoWins(board, rows, cols)) {
-      return true;
-    }
-    else {
-      return false;
-    }
-  }
-  
-  // intends to return the opposite color of the color parameter
-  // passed in
-  public String getOppositeColor(String color) {
-    if (color.equals("red")) {
-      return "yellow";
-    }
-    else if (color.equals("yellow")) {
-      return "red";
-    }
-    else {
-      return "Invalid Color";
+
+  // intends to redraw the square like showChip, measuring the time
+  // from the given System.nanoTime reading until it is drawn
+  public void showChip(int row, int column, Metrics.Histogram latency,
+      long sinceNanos) {
+    if (row >= 0) {
+      boardView.repaintCell(row, column, latency, sinceNanos);
     }
   }
   
@@ -530,61 +283,42 @@ public class BoardFrame extends JFrame {
   }
   
 
-  public class ButtonFunctionality implements ActionListener {
+  public class ButtonFunctionality
+      implements ActionListener, BoardComponent.ColumnListener {
     
-    public void actionPerformed(ActionEvent onClick) {
-      // intends to ensure a user cannot 'spam click'
-      // by disabling buttons while waiting on players
-      disableButtons(dropButtons);
-      restartButton.setEnabled(false);
+    // intends to drop a chip into the column the player clicked
+    // on, and send the column as a move message
+    public void columnSelected(int column) {
+      long clicked = System.nanoTime();
+      disableControls();
+      int row = session.playLocalMove(column);
+      showChip(row, column, CLICK_TO_PAINT, clicked);
       
-      // ensures you can only forfeit your own move if needed, not
-      // force another player into losing theirs.
-      swapTurn.setEnabled(false);
-      
-      // intends to match a button with a user's click request.
-      // drops a chip into the column at which a button is 
-      // found at. The for loop intends to minimize repetitive code
-      // due to many of the drop buttons having the same
-      // functionality even though they're in different columns.
-      for (Integer i = 0; i < dropButtons.size(); i++) {
-        // matches a button with a user's selection
-        if (onClick.getSource() == dropButtons.get(i)) {
-          // drops a chip in the column location
-          dropInColumn(ROWS, i, currentColor);
-          receivedCol = i.toString();
-          // sends a string representation of the column
-          socket.sendString(receivedCol);
-          break;
-        } 
-      }
       // displays a game over message to a user
-      // and disables buttons; imgDisplayed ensures that
+      // and disables the board; the session ensures that
       // the victory pop-up plays only once (if a user 
       // wants to toy around with hypothetical moves post-game,
       // they don't get spammed with fleets of pop-ups). Ensures
       // only 1 win notification occurs per game
-      if (gameIsOver(grid, ROWS, COLS) && !msgDisplayed) {
-        disableButtons(dropButtons);
+      if (session.checkGameOver()) {
         displayClosingMessage();
-        msgDisplayed = true;
       }
+    }
+    
+    public void actionPerformed(ActionEvent onClick) {
+      disableControls();
       
       // Intends to provide the functionality needed for a game 
       // restart; a restart simultaneously functions as a turn.
       // turn swap functionality can be paired with this to 
       // allow the other player to play first if so desired
       if (onClick.getSource() == restartButton) {
-        // intends to allow closing message to pop up again
-        // since a new game is started
-        msgDisplayed = false;
         // notifies user of restart
         displayRestartMessage();
-        // sends the notification that a restart request has
-        // been made
-        receivedCol = "-1";
-        // sends a notification that the restart button is clicked
-        socket.sendString(receivedCol);
+        // empties the game (allowing the closing message to pop
+        // up again) and sends the notification that a restart
+        // request has been made
+        session.restart();
         // reinitializes the game board
         initializeBoard();
 
@@ -597,59 +331,70 @@ public class BoardFrame extends JFrame {
       if (onClick.getSource() == swapTurn) {
         // sends the notification that a request to give a 
         // turn has been made
-        receivedCol = "-2";
-        socket.sendString(receivedCol);
+        session.swapTurn();
         // intends to notify the user of a turn being
         // switched/forfeited
         displayTurnSwapMessage();
       }
-      // causes the swingWorker created below to execute a cycle
-      new ButtonSwingWorker().execute();
     } 
+    
+    // intends to ensure a user cannot 'spam click'
+    // by disabling the board and buttons while waiting on players
+    private void disableControls() {
+      disableButtons();
+      restartButton.setEnabled(false);
+      
+      // ensures you can only forfeit your own move if needed, not
+      // force another player into losing theirs.
+      swapTurn.setEnabled(false);
+    }
   }
   
-  public class ButtonSwingWorker extends SwingWorker <Integer, Integer> {
-    
-    public Integer doInBackground() {
-      int restartSelection = -1;
-      int turnSelection = -2;
-      // Chosen column intends to represent the received 
-      // column from a user's previous selection in the
-      // action listener
-      int chosenColumn = Integer.parseInt(socket.receiveString());
+  // intends to apply the other side's messages on the event
+  // dispatch thread, as a RemoteMoveReader hands them over. Several
+  // messages which arrived together only ask for their squares to be
+  // repainted, which Swing merges into a single paint of the board.
+  public void handleRemoteMoves(List<GameMessage> batch) {
+    for (GameMessage receivedMessage : batch) {
+      // the received message intends to represent the other
+      // user's previous selection in their action listener
+      int row = session.applyRemoteMove(receivedMessage);
       // code below intends to mirror the actions of restarting 
       // a game
-      if (chosenColumn == restartSelection) {
-        msgDisplayed = false; 
+      if (receivedMessage.type == GameProtocol.RESTART) {
         displayRestartMessage();
         initializeBoard();
       }
       // intends to notify the user of a turn switch /
       // a user passing a turn to another
-      else if (chosenColumn == turnSelection) {
+      else if (receivedMessage.type == GameProtocol.SWAP_TURN) {
         displayTurnSwapMessage();
       }
       // else segment of conditional intends to mirror the action
       // of a user dropping a chip into a column in the listener
       else {
-        dropInColumn(ROWS, chosenColumn, getOppositeColor(currentColor));
+        showChip(row, receivedMessage.value, REMOTE_MOVE_TO_PAINT,
+            receivedMessage.receivedNanos);
       }     
       
       // conditional intends to mirror a victory message display 
       // from the sending user in action listener.
-      if (gameIsOver(grid, ROWS, COLS) && !msgDisplayed) {
+      if (session.checkGameOver()) {
         displayClosingMessage();
-        msgDisplayed = true;
       }
-      
-      return 0;
     }
     // intends to set all buttons back to true once the
     // turn-related work is done
-    public void done() {
-      enableButtons(dropButtons);
-      restartButton.setEnabled(true);
-      swapTurn.setEnabled(true);
-    }
-  } 
+    enableButtons();
+    restartButton.setEnabled(true);
+    swapTurn.setEnabled(true);
+  }
+  
+  // intends to start the one thread which waits on the other side
+  // for the rest of the game, handing everything it receives to
+  // the event dispatch thread
+  private void startReader() {
+    new RemoteMoveReader(session.getConnection(),
+        SwingUtilities::invokeLater, this::handleRemoteMoves).start();
+  }
 }
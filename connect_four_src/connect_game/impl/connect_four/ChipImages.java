@@ -0,0 +1,88 @@
+package connect_game.impl.connect_four;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/*
+ * Description: Holds the chip icons of the board, decoded once when
+ * the class is first used and shared by every square afterwards. The
+ * source JPEGs differ by a pixel in size, so each one is scaled into
+ * an opaque CHIP_SIZE x CHIP_SIZE image up front; drawing a square is
+ * then a plain copy of pixels with no lookup, decoding or scaling.
+ *
+ * */
+public final class ChipImages {
+  static final int CHIP_SIZE = 76;
+
+  private static final ImageIcon RED = load("red");
+  private static final ImageIcon YELLOW = load("yellow");
+  private static final ImageIcon WHITE = load("white");
+
+  private ChipImages() {
+  }
+
+  // returns the shared icon for "red", "yellow" or "white"
+  public static ImageIcon get(String color) {
+    if (color.equals("red")) {
+      return RED;
+    }
+    if (color.equals("yellow")) {
+      return YELLOW;
+    }
+    return WHITE;
+  }
+
+  // returns the shared icon for a square of the game state
+  public static ImageIcon get(GameState.colorType color) {
+    if (color == GameState.colorType.RED) {
+      return RED;
+    }
+    if (color == GameState.colorType.YELLOW) {
+      return YELLOW;
+    }
+    return WHITE;
+  }
+
+  // function intends to return a copy of the square's chip scaled to
+  // the given size, for boards too large for full-size chips. Callers
+  // keep the copies; nothing is cached here.
+  public static Image scaled(GameState.colorType color, int size) {
+    BufferedImage scaled = new BufferedImage(size, size,
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    graphics.drawImage(get(color).getImage(), 0, 0, size, size, null);
+    graphics.dispose();
+    return scaled;
+  }
+
+  // intends to decode one image from the classpath and scale it to
+  // the size of a board square
+  private static ImageIcon load(String color) {
+    URL url = ChipImages.class.getResource("/images/" + color + ".jpg");
+    try {
+      BufferedImage source = ImageIO.read(url);
+      BufferedImage scaled = new BufferedImage(CHIP_SIZE, CHIP_SIZE,
+          BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = scaled.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(source, 0, 0, CHIP_SIZE, CHIP_SIZE, null);
+      graphics.dispose();
+      return new ImageIcon(scaled);
+    }
+    catch (IOException | IllegalArgumentException error) {
+      System.out.println("Error: can't load the " + color + " chip image.");
+      System.exit(11);
+      return null;
+    }
+  }
+}
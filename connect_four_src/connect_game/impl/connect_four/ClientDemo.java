@@ -1,10 +1,14 @@
+package connect_game.impl.connect_four;
+
 /* 
  * Description: This class provides for the client implementation of
  * the Connect Four game. Within the main method a GUI frame containing 
  * the board and the game's underlying functionality is instantiated.
  * The client will connect to a server whenever the connect four server
  * is running. The client implementation of the game requires an IP
- * address and a port number. 
+ * address and a port number. Both may be passed as arguments, followed
+ * by the rows, columns and winning score of a big Connect-K board,
+ * which must match the server's.
  * 
  * 
  * */
@@ -15,7 +19,18 @@ public class ClientDemo {
     // sets up the IP and port number
     String ipAddress = "127.0.0.1";
     int portNumber = 45000;
+    if (args.length > 1) {
+      ipAddress = args[0];
+      portNumber = Integer.parseInt(args[1]);
+    }
     // creates the instantiation of the board frame.
-    BoardFrame game = new BoardFrame(ipAddress, portNumber);   
+    BoardFrame game;
+    if (args.length > 4) {
+      game = new BoardFrame(ipAddress, portNumber, Integer.parseInt(args[2]),
+          Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+    }
+    else {
+      game = new BoardFrame(ipAddress, portNumber);
+    }
   }
 }
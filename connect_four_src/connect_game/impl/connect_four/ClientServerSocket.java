@@ -1,24 +1,55 @@
+package connect_game.impl.connect_four;
+
 import java.net.Socket;
 import java.net.ServerSocket; 
 import java.io.DataOutputStream; 
 import java.io.DataInputStream; 
 import java.io.IOException; 
-import java.util.Vector;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
 /*
- * Description: Intends to send and receive String data, serving as
+ * Description: Intends to send and receive game messages, serving as
  * the main connection between the server board and the client board.
  * Functions defined through this socket class give us the opportunity
- * to send string representations of users' moves between the server
- * and the client. 
+ * to send users' moves between the server and the client as the
+ * binary frames described in GameProtocol.
  * 
  * */
-public class ClientServerSocket {
+public class ClientServerSocket implements GameConnection {
   private String ipAddress;
   private int portNumber;
   private Socket socket;
   private DataOutputStream outputData;
   private DataInputStream inputData;
   
+  // intends to reuse the same frame buffers for every message, so
+  // that sending and receiving create no garbage
+  private final byte[] outputFrame = new byte[GameProtocol.FRAME_LENGTH];
+  private final ByteBuffer outputBuffer = ByteBuffer.wrap(outputFrame);
+  private final byte[] inputFrame =
+      new byte[GameProtocol.LENGTH_FIELD + GameProtocol.MAX_BODY_LENGTH];
+  private final ByteBuffer inputBuffer = ByteBuffer.wrap(inputFrame);
+  private int outputSequence = 0;
+
+  // the reading thread answers pings while the board sends its moves
+  // from another thread, so every frame is encoded and written under
+  // this lock
+  private final ReentrantLock outputLock = new ReentrantLock();
+
+  // when the last game message was sent, until the other side's
+  // answer arrives, as a System.nanoTime reading (0 when none is
+  // outstanding)
+  private volatile long turnSentNanos = 0;
+
+  private static final Metrics.Histogram SEND_LATENCY =
+      Metrics.histogram("socket.send");
+  private static final Metrics.Histogram TURN_ROUND_TRIP =
+      Metrics.histogram("socket.turnRoundTrip");
+  private static final Metrics.Counter FRAMES_SENT =
+      Metrics.counter("socket.framesSent");
+  private static final Metrics.Counter FRAMES_RECEIVED =
+      Metrics.counter("socket.framesReceived");
+  
   // socket accepts an IP address and a port number
   public ClientServerSocket(String inipAddress, int inPortNumber) {
     ipAddress = inipAddress;
@@ -31,6 +62,7 @@ public class ClientServerSocket {
   public void startClient() {
     try {
       socket = new Socket(ipAddress, portNumber);
+      socket.setTcpNoDelay(true);
       outputData = new DataOutputStream(socket.getOutputStream());
       inputData = new DataInputStream(socket.getInputStream());
     }
@@ -48,6 +80,7 @@ public class ClientServerSocket {
       serverSock = new ServerSocket(portNumber);
       System.out.println("Waiting for client to connect... ");
       socket = serverSock.accept();
+      socket.setTcpNoDelay(true);
       outputData = new DataOutputStream(socket.getOutputStream());
       inputData = new DataInputStream(socket.getInputStream());
       System.out.println("Client server accepted! ");
@@ -58,54 +91,77 @@ public class ClientServerSocket {
     }
   }
   
-  // function intends to receive a string from the other end
-  public String receiveString() {
-    String recvString = "";
-    byte recByte;
-    byte[] byteAry; 
-    // intends to treat string data as vectors of bytes
-    Vector<Byte> byteVector = new Vector<Byte>();
-    
+  // function intends to receive the next move, restart or turn swap
+  // from the other end. Pings are answered with an acknowledgement,
+  // and acknowledgements, WATCH frames (meant for the server's
+  // spectator port) and frames this version cannot read are skipped,
+  // so only game messages are returned. The frame is read
+  // into a buffer reused for every call.
+  public void receiveMessage(GameMessage message) {
     try {
-      recByte = inputData.readByte();
-      while (recByte != 0) {
-        byteVector.add(recByte);
-        recByte = inputData.readByte();
+      while (true) {
+        inputData.readFully(inputFrame, 0, GameProtocol.LENGTH_FIELD);
+        int length =
+            GameProtocol.checkLength(inputBuffer.getShort(0) & 0xFFFF);
+        inputData.readFully(inputFrame, GameProtocol.LENGTH_FIELD, length);
+        FRAMES_RECEIVED.increment();
+        if (!GameProtocol.decodeBody(inputBuffer, GameProtocol.LENGTH_FIELD,
+            message)) {
+          continue;
+        }
+        if (message.type == GameProtocol.PING) {
+          sendMessage(GameProtocol.ACK, message.sequence);
+        }
+        // a board has nothing to watch, so a WATCH frame is skipped
+        // like an acknowledgement rather than played as a move
+        else if (message.type != GameProtocol.ACK
+            && message.type != GameProtocol.WATCH) {
+          // from our last message to the answer, including the time
+          // the other player took to think
+          long sent = turnSentNanos;
+          if (sent != 0) {
+            TURN_ROUND_TRIP.recordSince(sent);
+            turnSentNanos = 0;
+          }
+          return;
+        }
       }
-      int len = byteVector.size();
-      byteAry = new byte[len];
-      
-      // byteAry values are matched with the bytevector's
-      // which contain recBytes (received bytes)
-      for (int i = 0; i < len; i++) {
-        byteAry[i] = byteVector.elementAt(i).byteValue();
-      }
-      recvString = new String(byteAry);
     }
-    // error handles if a string is not properly received
-    catch (IOException ioe) {
-      System.out.println("Error: receiving string from socket.");
+    // error handles if a message is not properly received
+    catch (IOException | IllegalArgumentException error) {
+      System.out.println("Error: receiving message from socket.");
       System.exit(8);
     }
-    
-    return (recvString);
   }
   
-  // function intends to send String data
-  public boolean sendString (String inSendString) {
+  // function intends to send one message as a single frame, written
+  // to the socket with one call from a reused buffer. Safe to call
+  // from several threads.
+  public boolean sendMessage(byte type, int value) {
     boolean success = false;
     
-    // writes out the bytes
+    // writes out the frame
+    outputLock.lock();
     try { 
-      outputData.writeBytes(inSendString);
-      outputData.writeByte(0);
+      long start = System.nanoTime();
+      outputBuffer.clear();
+      GameProtocol.encode(outputBuffer, type, ++outputSequence, value);
+      outputData.write(outputFrame, 0, outputBuffer.position());
+      SEND_LATENCY.recordSince(start);
+      FRAMES_SENT.increment();
+      if (type != GameProtocol.ACK) {
+        turnSentNanos = start;
+      }
       success = true; 
     }
     catch (IOException ioe) {
       System.out.println("Error: writing to socket stream.");
       System.exit(-1);
     }
-    // intends to return a boolean feedback on the string sending
+    finally {
+      outputLock.unlock();
+    }
+    // intends to return a boolean feedback on the message sending
     return (success);
   }
 }
@@ -0,0 +1,56 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/*
+ * Description: This class provides a single-player implementation of
+ * the game. Instead of waiting for a client to connect, the board is
+ * played against the computer, which takes the yellow chips and
+ * answers each move within a time budget (in milliseconds) that can
+ * be passed as the first argument. The second argument sets how many
+ * threads the computer searches with (all cores by default), and an
+ * optional third argument names an opening book written by
+ * OpeningBookGenerator, which the computer plays the opening from
+ * ("-" for none). A fourth argument "ponder" has the computer search
+ * its answers to the player's replies while the player thinks.
+ * 
+ * */
+
+public class ComputerDemo {
+
+  public static void main(String [] args) {
+    // Instantiates the computer's thinking time per move
+    long timeBudgetMillis = 1000;
+    if (args.length > 0) {
+      timeBudgetMillis = Long.parseLong(args[0]);
+    }
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (args.length > 1) {
+      threads = Integer.parseInt(args[1]);
+    }
+    // creates the computer opponent using the board's rules
+    ComputerPlayer computer = new ComputerPlayer(GameSession.ROWS,
+        GameSession.COLS, GameSession.WINNING_SCORE,
+        GameState.colorType.YELLOW, timeBudgetMillis, threads);
+    if (args.length > 3 && args[3].equals("ponder")) {
+      computer.enablePondering();
+    }
+    if (args.length > 2 && !args[2].equals("-")) {
+      try {
+        OpeningBook book = new OpeningBook(Paths.get(args[2]));
+        computer.setOpeningBook(book);
+        System.out.println("Opening book: " + book.getPositionCount()
+            + " positions up to ply " + book.getMaxPly());
+      }
+      catch (IOException | IllegalArgumentException error) {
+        System.out.println("Error: cannot use opening book " + args[2]
+            + ": " + error.getMessage());
+        System.exit(13);
+      }
+    }
+    // creates the game frame for the player
+    BoardFrame game = new BoardFrame(computer);
+
+  } 
+}
@@ -0,0 +1,230 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.Semaphore;
+
+/*
+ * Description: This class lets a board play against the computer
+ * instead of a remote player. It takes the place of the socket: the
+ * moves a board sends are played on a private copy of the game, and
+ * every receive answers with the column chosen by the solver, which
+ * searches on as many threads as it is given. Boards too large for
+ * the solver's bitboards are played with a MonteCarloSearch on the
+ * same threads instead. Each answer is bounded
+ * by a time budget, and the time taken is reported on the console so
+ * single-player sessions can be monitored.
+ *
+ * A board keeps one thread waiting in receiveMessage for the whole
+ * game, so a receive blocks until it is the computer's turn: each
+ * message the player sends hands the computer one turn, and red also
+ * starts with one.
+ *
+ * */
+public class ComputerPlayer implements GameConnection {
+  private GameBoard game;
+
+  // exactly one of these is used, depending on the size of the board
+  private ParallelSolver solver;
+  private MonteCarloSearch monteCarlo;
+
+  // replaces the solver once useIterativeDeepening is called
+  private IterativeDeepening deepening;
+
+  // searches the player's replies while the player thinks, once
+  // enablePondering is called
+  private boolean ponder;
+  private Ponderer ponderer;
+  private OpeningBook openingBook;
+  private GameState.colorType computerColor;
+  private GameState.colorType playerColor;
+  private long timeBudgetMillis;
+  private int sequence = 0;
+
+  // one permit per turn the computer owes the player. Releasing it
+  // after the player's message is mirrored also publishes that move
+  // to the receiving thread.
+  private final Semaphore turns = new Semaphore(0);
+
+  private static final Metrics.Histogram MOVE_LATENCY =
+      Metrics.histogram("computer.move");
+  private static final Metrics.Counter PONDER_HITS =
+      Metrics.counter("computer.ponderHits");
+  private static final Metrics.Counter PONDER_MISSES =
+      Metrics.counter("computer.ponderMisses");
+
+  // the computer plays the given color and never thinks longer than
+  // the time budget for a single move
+  public ComputerPlayer(int rows, int cols, int winningScore,
+      GameState.colorType inComputerColor, long inTimeBudgetMillis,
+      int threads) {
+    game = GameBoard.create(rows, cols, winningScore);
+    if (game instanceof GameState) {
+      solver = new ParallelSolver(rows, cols, winningScore, threads);
+    }
+    else {
+      monteCarlo = new MonteCarloSearch(rows, cols, winningScore, threads);
+    }
+    computerColor = inComputerColor;
+    playerColor = (computerColor == GameState.colorType.RED)
+        ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    timeBudgetMillis = inTimeBudgetMillis;
+    if (computerColor == GameState.colorType.RED) {
+      turns.release();
+    }
+  }
+
+  // intends to play the opening from the book instead of searching
+  public void setOpeningBook(OpeningBook book) {
+    if (solver == null) {
+      throw new IllegalArgumentException("Opening books only hold boards"
+          + " which fit in 64 bits");
+    }
+    solver.setOpeningBook(book);
+    openingBook = book;
+  }
+
+  // intends to answer every move with an iterative-deepening search on
+  // the receiving thread, which always uses its whole time budget but
+  // never more, instead of the exact solver
+  public void useIterativeDeepening() {
+    if (solver == null) {
+      throw new IllegalArgumentException("Iterative deepening only"
+          + " searches boards which fit in 64 bits");
+    }
+    deepening = new IterativeDeepening(game.getRows(), game.getCols(),
+        game.getWinningScore());
+  }
+
+  // intends to search the answer to each of the player's replies on a
+  // background thread while the player thinks, so that the computer
+  // answers the reply at once if it was searched. Uses the same kind
+  // of search as the real moves, on one low-priority thread.
+  public void enablePondering() {
+    if (solver == null) {
+      throw new IllegalArgumentException("Pondering only searches boards"
+          + " which fit in 64 bits");
+    }
+    ponder = true;
+  }
+
+  // the ponderer is only created once the first move is played, so
+  // that it uses the search and opening book chosen by then
+  private Ponderer getPonderer() {
+    if (ponderer == null) {
+      Ponderer.Search search;
+      if (deepening != null) {
+        search = new IterativeDeepening(game.getRows(), game.getCols(),
+            game.getWinningScore());
+      }
+      else {
+        // sharing the table also hands the speculative work on to the
+        // real search when the reply was not searched in time
+        Solver ponderSolver = new Solver(game.getRows(), game.getCols(),
+            game.getWinningScore(), solver.getTable());
+        ponderSolver.setOpeningBook(openingBook);
+        search = ponderSolver;
+      }
+      ponderer = new Ponderer(search, game.getCols(), timeBudgetMillis);
+    }
+    return ponderer;
+  }
+
+  public int getRows() {
+    return game.getRows();
+  }
+
+  public int getCols() {
+    return game.getCols();
+  }
+
+  public int getWinningScore() {
+    return game.getWinningScore();
+  }
+
+  // function intends to mirror the player's move (or restart/turn
+  // swap request) on the computer's copy of the board
+  public boolean sendMessage(byte type, int value) {
+    if (ponderer != null) {
+      ponderer.stop();
+    }
+    if (type == GameProtocol.RESTART) {
+      game.reset();
+    }
+    else if (type == GameProtocol.MOVE) {
+      game.dropInColumn(value, playerColor);
+    }
+    turns.release();
+    return true;
+  }
+
+  // function intends to choose, play and return the computer's move.
+  // Blocks until it is the computer's turn. If every column is full
+  // the computer can only pass the turn back.
+  public void receiveMessage(GameMessage message) {
+    turns.acquireUninterruptibly();
+    long start = System.nanoTime();
+    int column = -1;
+    if (ponderer != null) {
+      column = ponderer.answer((GameState) game);
+      (column >= 0 ? PONDER_HITS : PONDER_MISSES).increment();
+    }
+    boolean pondered = column >= 0;
+    if (!pondered) {
+      column = search();
+    }
+    MOVE_LATENCY.recordSince(start);
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    message.sequence = ++sequence;
+    if (column < 0) {
+      message.type = GameProtocol.SWAP_TURN;
+      message.value = 0;
+      return;
+    }
+    game.dropInColumn(column, computerColor);
+    if (ponder && !game.gameIsOver()) {
+      getPonderer().start((GameState) game, playerColor, computerColor);
+    }
+
+    if (pondered) {
+      System.out.println("Computer played column " + column + " in "
+          + elapsedMillis + " ms (searched while the player thought)");
+    }
+    else if (deepening != null) {
+      System.out.println("Computer played column " + column + " in "
+          + elapsedMillis + " ms (depth " + deepening.getLastDepth() + ", "
+          + deepening.getNodeCount() + " positions, "
+          + deepening.getNodesPerSecond() + " positions/s)");
+    }
+    else if (monteCarlo != null) {
+      System.out.println("Computer played column " + column + " in "
+          + elapsedMillis + " ms (" + monteCarlo.getPlayoutCount()
+          + " playouts, " + Math.round(monteCarlo.getLastWinRate() * 100)
+          + "% won)");
+    }
+    else if (solver.lastMoveWasSolved()) {
+      System.out.println("Computer played column " + column + " in "
+          + elapsedMillis + " ms (score " + solver.getLastScore() + ", "
+          + solver.getNodeCount() + " positions)");
+    }
+    else {
+      System.out.println("Computer played column " + column + " in "
+          + elapsedMillis + " ms (time budget reached after "
+          + solver.getNodeCount() + " positions)");
+    }
+    message.type = GameProtocol.MOVE;
+    message.value = column;
+  }
+
+  // function intends to choose the computer's column with whichever
+  // search the board and settings call for
+  private int search() {
+    if (deepening != null) {
+      return deepening.chooseColumn((GameState) game, computerColor,
+          timeBudgetMillis);
+    }
+    if (solver != null) {
+      return solver.chooseColumn((GameState) game, computerColor,
+          timeBudgetMillis);
+    }
+    return monteCarlo.chooseColumn(game, computerColor, timeBudgetMillis);
+  }
+}
@@ -0,0 +1,133 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Description: Keeps the record of every finished game: the games
+ * themselves in a GameJournal, and every position they reached in a
+ * PositionIndex named after the journal (<journal>.index.slots and
+ * <journal>.index.games). Each game is indexed as soon as it has been
+ * appended, so the index is always as current as the journal. A
+ * journal written before its index existed is indexed when the
+ * archive is opened.
+ *
+ * Games handed over with recordLater are copied and written by the
+ * archive's own thread, one at a time in the order they came, so a
+ * caller such as an event loop never waits for the files, nor for the
+ * index doubling its table. Closing the archive writes the games still
+ * waiting first.
+ *
+ * Only one archive may have a journal open at a time (the journal is
+ * locked while it is), and buildIndex indexes a journal without
+ * opening it for writing, refusing to while an archive has it open.
+ *
+ * */
+public class GameArchive {
+  private final GameJournal journal;
+  private final PositionIndex index;
+
+  private final ExecutorService thread = Executors.newSingleThreadExecutor(
+      runnable -> {
+        Thread archiveThread = new Thread(runnable, "game-archive");
+        archiveThread.setDaemon(true);
+        return archiveThread;
+      });
+
+  public GameArchive(Path journalFile, int rows, int cols, int winningScore)
+      throws IOException {
+    journal = new GameJournal(journalFile, rows, cols, winningScore);
+    index = new PositionIndex(indexName(journalFile), rows, cols,
+        winningScore, false);
+    catchUp(journal.newReader(), index);
+  }
+
+  // function intends to bring the index of a journal up to date with
+  // it, without opening the journal for writing, and return the index
+  // (to be closed by the caller). Fails while the journal is open in
+  // an archive, which may be appending to both.
+  public static PositionIndex buildIndex(Path journalFile)
+      throws IOException {
+    GameJournal.Reader reader = GameJournal.Reader.openShared(journalFile);
+    try {
+      PositionIndex built = new PositionIndex(indexName(journalFile),
+          reader.getRows(), reader.getCols(), reader.getWinningScore(),
+          false);
+      catchUp(reader, built);
+      return built;
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  // method intends to record one finished game in the journal and the
+  // index. The ending is added to the game, which should be cleared
+  // before it records the next one.
+  public synchronized void record(GameJournal.Game game, boolean restarted)
+      throws IOException {
+    long offset = journal.append(game, restarted);
+    index.addGame(offset, game);
+  }
+
+  // method intends to record a copy of the game on the archive's
+  // thread and return at once, so the game may be cleared straight
+  // away. Errors writing it are reported by that thread.
+  public void recordLater(GameJournal.Game game, boolean restarted) {
+    GameJournal.Game copy = game.copy();
+    thread.execute(() -> {
+      try {
+        record(copy, restarted);
+      }
+      catch (IOException ioe) {
+        System.out.println("Error: writing to the game archive.");
+      }
+    });
+  }
+
+  // indexes the games the journal holds beyond those already indexed
+  private static void catchUp(GameJournal.Reader reader,
+      PositionIndex index) throws IOException {
+    GameJournal.Game game = new GameJournal.Game(reader.getCols());
+    long skipped = 0;
+    long offset = reader.getPosition();
+    while (reader.next(game)) {
+      if (skipped++ >= index.getGameCount()) {
+        index.addGame(offset, game);
+      }
+      offset = reader.getPosition();
+    }
+  }
+
+  private static Path indexName(Path journalFile) {
+    return Paths.get(journalFile + ".index");
+  }
+
+  public GameJournal getJournal() {
+    return journal;
+  }
+
+  public PositionIndex getIndex() {
+    return index;
+  }
+
+  // intends to write the games still waiting for the archive's thread,
+  // then close the journal and the index
+  public void close() throws IOException {
+    thread.shutdown();
+    try {
+      thread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      journal.close();
+      index.close();
+    }
+  }
+}
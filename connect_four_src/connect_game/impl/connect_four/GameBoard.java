@@ -0,0 +1,64 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: Intends to describe the board of one game as the views
+ * and sessions see it: dropping chips, asking for the color of a
+ * square and checking for the end of the game. GameState implements
+ * it with bitboards for boards which fit in 64 bits, the classic
+ * 6 x 7 among them, and LargeGameState with sparse storage for
+ * anything larger, up to boards of a million squares. Searching,
+ * recording and serving games still need a GameState.
+ *
+ * */
+public interface GameBoard {
+
+  // intends to empty the board so a new game can be started
+  void reset();
+
+  // function intends to place a chip of the given color on top of the
+  // given column. Returns the grid row (0 being the top row) the chip
+  // landed in, or -1 if the column was already full.
+  int dropInColumn(int column, GameState.colorType color);
+
+  boolean columnIsFull(int column);
+
+  // the game ends in a draw once every square has been played
+  boolean isFull();
+
+  // true once somebody has won or the board is full
+  boolean gameIsOver();
+
+  // returns the color that completed the first line of the game, or
+  // UNKNOWN if nobody has won yet
+  GameState.colorType getWinner();
+
+  // returns the color of the square at (row, column), where row 0 is
+  // the top of the board as it is displayed
+  GameState.colorType getColor(int row, int column);
+
+  int getColumnHeight(int column);
+
+  int getMoveCount();
+
+  // the Zobrist key of the chips on the board, kept up to date by
+  // every drop; see Zobrist
+  long zobristKey();
+
+  // the Zobrist key shared by the position and its mirror image
+  long canonicalZobristKey();
+
+  int getRows();
+
+  int getCols();
+
+  int getWinningScore();
+
+  // function intends to create the cheapest board for the dimensions:
+  // a bitboard GameState where one fits, a LargeGameState otherwise
+  static GameBoard create(int rows, int cols, int winningScore) {
+    if (cols * (long) (rows + 1) <= Long.SIZE) {
+      return new GameState(rows, cols, winningScore);
+    }
+    return new LargeGameState(rows, cols, winningScore);
+  }
+}
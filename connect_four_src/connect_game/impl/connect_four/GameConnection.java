@@ -0,0 +1,20 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: Intends to describe the other side of a game from the
+ * point of view of a board. A board sends its own moves, restarts and
+ * turn swaps as GameProtocol messages and receives the other side's
+ * in the same form, whether they come from a remote player over a
+ * socket or from the computer.
+ *
+ * */
+public interface GameConnection {
+
+  // function intends to send a message (a GameProtocol type, with the
+  // column as the value of a MOVE) to the other side
+  boolean sendMessage(byte type, int value);
+
+  // function intends to block until the other side makes a move,
+  // restart or turn swap, and decode it into the given message
+  void receiveMessage(GameMessage message);
+}
@@ -0,0 +1,442 @@
+package connect_game.impl.connect_four;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Description: An append-only file recording every game played, in a
+ * few bits per move. Each game is one record:
+ *
+ *   events   varint   number of events in the game
+ *   bits     events * width bits, padded to a whole byte
+ *
+ * where an event is the column of a move (0 to cols - 1), a turn swap
+ * (cols), and last of all how the game ended: a restart (cols + 1) or
+ * the connection closing (cols + 2). Width is the fewest bits that
+ * hold cols + 2, so a 7 column game takes 4 bits per move and a whole
+ * game fits in about 25 bytes. Red moves first unless the record
+ * starts with a swap, and every move hands the turn to the other
+ * player, so the chips' colors need not be stored. Who won is worked
+ * out by replaying the moves.
+ *
+ * The file starts with a 16 byte header (magic, rows, columns and the
+ * winning score) and is written through memory-mapped regions of
+ * 64MB, so appending a record is a copy into memory and the operating
+ * system writes it out in its own time. Games are recorded in memory
+ * while they are played and appended whole when they end, so the
+ * records of concurrent games never interleave. The bytes after the
+ * last record are zero, which reads as a record of no events, and
+ * mark the end of the journal; closing the journal cuts the file back
+ * to its last record. The file is locked while a journal has it open,
+ * so a second writer (which would cut off the first one's records when
+ * it closes) fails to open it, and a reader from Reader.openShared is
+ * sure it is not being written. Since closing any handle on a file
+ * drops the whole process's lock on it, files open in this process
+ * are also kept in a set and checked before a handle is opened.
+ *
+ * */
+public class GameJournal {
+  private static final int MAGIC = 0x43344A31;
+  static final int HEADER_BYTES = 16;
+  private static final long REGION_BYTES = 64L << 20;
+
+  // the journals open for writing or shared reading in this process
+  private static final Set<Path> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+  private final Path openFile;
+  private final FileChannel channel;
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private MappedByteBuffer region;
+  private long regionStart;
+  private long end;
+
+  // intends to open the journal, creating it for the given board size
+  // if it does not exist yet, and append after its last record
+  public GameJournal(Path file, int inRows, int inCols, int inWinningScore)
+      throws IOException {
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    openFile = claim(file);
+    try {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    catch (IOException ioe) {
+      OPEN_FILES.remove(openFile);
+      throw ioe;
+    }
+    if (!locked(channel, false)) {
+      channel.close();
+      OPEN_FILES.remove(openFile);
+      throw new IOException("Journal is in use: " + file);
+    }
+    if (channel.size() == 0) {
+      map(0);
+      region.putInt(MAGIC).putInt(rows).putInt(cols).putInt(winningScore);
+      end = HEADER_BYTES;
+    }
+    else {
+      Reader existing = new Reader(channel, false);
+      if (existing.getRows() != rows || existing.getCols() != cols
+          || existing.getWinningScore() != winningScore) {
+        throw new IOException("Journal was written for another board size");
+      }
+      Game skipped = new Game(cols);
+      while (existing.next(skipped)) {
+        // only the end of the last record is needed
+      }
+      end = existing.getPosition();
+      map(end);
+    }
+  }
+
+  // method intends to append one whole game, ended by a restart or by
+  // the connection closing. The ending is added to the game, which
+  // should be cleared before it records the next one. Returns the
+  // offset of the record in the journal.
+  public synchronized long append(Game game, boolean restarted)
+      throws IOException {
+    if (region == null) {
+      throw new IOException("Journal is closed");
+    }
+    game.add(restarted ? cols + 1 : cols + 2);
+    int bytes = game.byteCount();
+    int length = varintLength(game.count) + bytes;
+    if (end + length > regionStart + region.capacity()) {
+      map(end);
+    }
+    region.position((int) (end - regionStart));
+    int count = game.count;
+    while ((count & ~0x7F) != 0) {
+      region.put((byte) ((count & 0x7F) | 0x80));
+      count >>>= 7;
+    }
+    region.put((byte) count);
+    region.put(game.bits, 0, bytes);
+    long offset = end;
+    end += length;
+    return offset;
+  }
+
+  // intends to flush what has been appended and close the file, cut
+  // back to the end of the last record. The mapped region is never
+  // touched again, so cutting the file under it is safe.
+  public synchronized void close() throws IOException {
+    region.force();
+    region = null;
+    channel.truncate(end);
+    channel.close();
+    OPEN_FILES.remove(openFile);
+  }
+
+  // function intends to return a reader of the records appended so
+  // far. It shares the journal's file, since closing any other handle
+  // on the file would release the journal's lock, so it is never
+  // closed itself.
+  public synchronized Reader newReader() throws IOException {
+    return new Reader(channel, false);
+  }
+
+  // the size of the journal in bytes
+  public synchronized long getSize() {
+    return end;
+  }
+
+  // maps the next region, which grows the file to cover it
+  private void map(long start) throws IOException {
+    regionStart = start;
+    region = channel.map(FileChannel.MapMode.READ_WRITE, start,
+        REGION_BYTES);
+  }
+
+  // function intends to mark the file open in this process and return
+  // the name it is kept under, failing if it is open already
+  private static Path claim(Path file) throws IOException {
+    Path openFile = file.toAbsolutePath().normalize();
+    if (!OPEN_FILES.add(openFile)) {
+      throw new IOException("Journal is in use: " + file);
+    }
+    return openFile;
+  }
+
+  // function intends to lock the whole file for this process, shared
+  // or exclusively, and return false if another lock is in the way.
+  // The lock is released when the channel closes.
+  private static boolean locked(FileChannel channel, boolean shared)
+      throws IOException {
+    try {
+      return channel.tryLock(0, Long.MAX_VALUE, shared) != null;
+    }
+    catch (OverlappingFileLockException held) {
+      // locked by this process already
+      return false;
+    }
+  }
+
+  private static int varintLength(int value) {
+    int length = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  // bits needed for the events of a board with the given columns
+  static int eventWidth(int cols) {
+    return 32 - Integer.numberOfLeadingZeros(cols + 2);
+  }
+
+  // the events of one game, packed as they are stored in the journal.
+  // A match keeps one and records into it as moves are relayed.
+  public static class Game {
+    private final int cols;
+    private final int width;
+    private byte[] bits = new byte[32];
+    private int count = 0;
+
+    public Game(int inCols) {
+      cols = inCols;
+      width = eventWidth(cols);
+    }
+
+    public void addMove(int column) {
+      add(column);
+    }
+
+    // two swaps in a row hand the turn back, so they cancel out, which
+    // also keeps a game of endless swaps small
+    public void addSwap() {
+      if (count > 0 && getEvent(count - 1) == cols) {
+        count--;
+        int bit = count * width;
+        for (int i = 0; i < width; i++, bit++) {
+          bits[bit >> 3] &= (byte) ~(0x80 >>> (bit & 7));
+        }
+      }
+      else {
+        add(cols);
+      }
+    }
+
+    // a copy of the events, to be recorded while this game is reused
+    public Game copy() {
+      Game copy = new Game(cols);
+      copy.bits = bits.clone();
+      copy.count = count;
+      return copy;
+    }
+
+    // intends to empty the game for reuse
+    public void clear() {
+      Arrays.fill(bits, 0, byteCount(), (byte) 0);
+      count = 0;
+    }
+
+    public int getEventCount() {
+      return count;
+    }
+
+    // function intends to unpack the event at the given index: a
+    // column, getSwap(), getRestart() or getClose()
+    public int getEvent(int index) {
+      int bit = index * width;
+      int event = 0;
+      for (int i = 0; i < width; i++, bit++) {
+        event = (event << 1) | ((bits[bit >> 3] >>> (7 - (bit & 7))) & 1);
+      }
+      return event;
+    }
+
+    public int getSwap() {
+      return cols;
+    }
+
+    public int getRestart() {
+      return cols + 1;
+    }
+
+    public int getClose() {
+      return cols + 2;
+    }
+
+    private void add(int event) {
+      int bit = count * width;
+      if ((bit + width + 7) >> 3 > bits.length) {
+        bits = Arrays.copyOf(bits, bits.length * 2);
+      }
+      for (int i = width - 1; i >= 0; i--, bit++) {
+        if (((event >>> i) & 1) != 0) {
+          bits[bit >> 3] |= (byte) (0x80 >>> (bit & 7));
+        }
+      }
+      count++;
+    }
+
+    private int byteCount() {
+      return (count * width + 7) >> 3;
+    }
+
+    // replaces the events with a record read from a journal
+    private void read(ByteBuffer buffer, int index, int events) {
+      count = events;
+      int bytes = byteCount();
+      if (bits.length < bytes) {
+        bits = new byte[Integer.highestOneBit(bytes) * 2];
+      }
+      buffer.get(index, bits, 0, bytes);
+      Arrays.fill(bits, bytes, bits.length, (byte) 0);
+    }
+  }
+
+  // streams the records of a journal from start to end, mapping the
+  // file a region at a time
+  public static class Reader implements Closeable {
+    private final FileChannel channel;
+    private final boolean ownChannel;
+    private Path openFile;
+    private final long size;
+    private final int rows;
+    private final int cols;
+    private final int winningScore;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position = HEADER_BYTES;
+
+    public Reader(Path file) throws IOException {
+      this(FileChannel.open(file, StandardOpenOption.READ), true);
+    }
+
+    private Reader(FileChannel inChannel, boolean inOwnChannel)
+        throws IOException {
+      channel = inChannel;
+      ownChannel = inOwnChannel;
+      size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IOException("Not a game journal");
+      }
+      map(0);
+      if (region.getInt(0) != MAGIC) {
+        throw new IOException("Not a game journal");
+      }
+      rows = region.getInt(4);
+      cols = region.getInt(8);
+      winningScore = region.getInt(12);
+    }
+
+    // function intends to read the next game into the given one.
+    // Returns false at the end of the journal.
+    public boolean next(Game game) throws IOException {
+      int prefix = (int) Math.min(5, size - position);
+      if (prefix <= 0 || !available(position, prefix)) {
+        return false;
+      }
+      int index = (int) (position - regionStart);
+      int events = 0;
+      int shift = 0;
+      int length = 0;
+      byte next;
+      do {
+        next = region.get(index + length++);
+        events |= (next & 0x7F) << shift;
+        shift += 7;
+      } while (next < 0 && length < prefix);
+      if (events == 0) {
+        return false;
+      }
+      int bytes = (events * eventWidth(cols) + 7) >> 3;
+      if (!available(position, length + bytes)) {
+        return false;
+      }
+      game.read(region, (int) (position - regionStart) + length, events);
+      position += length + bytes;
+      return true;
+    }
+
+    // makes sure the mapped region holds the given bytes, mapping a
+    // new region from the start of them if not. A record cut short at
+    // the end of the file counts as not available.
+    private boolean available(long start, int bytes) throws IOException {
+      if (start + bytes > size) {
+        return false;
+      }
+      if (start + bytes > regionStart + region.limit()) {
+        map(start);
+      }
+      return true;
+    }
+
+    private void map(long start) throws IOException {
+      regionStart = start;
+      region = channel.map(FileChannel.MapMode.READ_ONLY, start,
+          Math.min(REGION_BYTES, size - start));
+    }
+
+    // function intends to open a reader which keeps any GameJournal
+    // from opening the file until it is closed, so the records it
+    // reads are all there will be. Fails if one has the file open.
+    public static Reader openShared(Path file) throws IOException {
+      Path openFile = claim(file);
+      Reader reader;
+      try {
+        reader = new Reader(file);
+      }
+      catch (IOException ioe) {
+        OPEN_FILES.remove(openFile);
+        throw ioe;
+      }
+      reader.openFile = openFile;
+      if (!locked(reader.channel, true)) {
+        reader.close();
+        throw new IOException("Journal is in use: " + file);
+      }
+      return reader;
+    }
+
+    // intends to close the file, unless it belongs to a GameJournal
+    public void close() throws IOException {
+      if (ownChannel) {
+        channel.close();
+      }
+      if (openFile != null) {
+        OPEN_FILES.remove(openFile);
+        openFile = null;
+      }
+    }
+
+    // the offset just after the last record read
+    public long getPosition() {
+      return position;
+    }
+
+    // intends to continue reading from the record at the given offset,
+    // as returned by GameJournal.append
+    public void seek(long offset) {
+      position = Math.max(offset, HEADER_BYTES);
+    }
+
+    public int getRows() {
+      return rows;
+    }
+
+    public int getCols() {
+      return cols;
+    }
+
+    public int getWinningScore() {
+      return winningScore;
+    }
+  }
+}
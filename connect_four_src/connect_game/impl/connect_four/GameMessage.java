@@ -0,0 +1,17 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: A decoded protocol message. Readers own one instance
+ * and decode every incoming frame into it, so receiving a message does
+ * not allocate. See GameProtocol for the meaning of each field.
+ *
+ * */
+public class GameMessage {
+  public byte type;
+  public int sequence;
+  public int value;
+
+  // when the message was received, as a System.nanoTime reading, so
+  // the time until it is shown can be measured
+  public long receivedNanos;
+}
@@ -0,0 +1,108 @@
+package connect_game.impl.connect_four;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Description: Defines the binary messages exchanged between boards
+ * and servers. Every message is one length-prefixed frame, so a reader
+ * always knows how many bytes to wait for, and frames it cannot read
+ * (a newer version, possibly with a longer body, or a message type it
+ * does not know) are skipped rather than treated as errors. Only a
+ * length outside [BODY_LENGTH, MAX_BODY_LENGTH] is malformed:
+ *
+ *   length   2 bytes  number of bytes following the length field
+ *   version  1 byte   protocol version (currently 1)
+ *   type     1 byte   MOVE, RESTART, SWAP_TURN, ACK, PING or WATCH
+ *   sequence 4 bytes  per-sender counter, starting at 1
+ *   value    4 bytes  the column of a MOVE, the acknowledged
+ *                     sequence of an ACK, the match number of a
+ *                     WATCH, 0 otherwise
+ *
+ * All numbers are big-endian. Frames are encoded into and decoded from
+ * caller-owned buffers, so sending or receiving a message does not
+ * allocate anything.
+ *
+ * A spectator sends a single WATCH to a server's spectator port and
+ * then only receives the MOVE, RESTART and SWAP_TURN frames of that
+ * match, starting with those since its last restart. The server only
+ * relays a message from the player whose turn it is, so every frame
+ * hands the turn to the other player, red moving first.
+ *
+ * */
+public final class GameProtocol {
+  public static final byte VERSION = 1;
+
+  public static final byte MOVE = 1;
+  public static final byte RESTART = 2;
+  public static final byte SWAP_TURN = 3;
+  public static final byte ACK = 4;
+  public static final byte PING = 5;
+  public static final byte WATCH = 6;
+
+  // bytes after the length field in a version 1 frame
+  public static final int BODY_LENGTH = 10;
+  public static final int LENGTH_FIELD = 2;
+  public static final int FRAME_LENGTH = LENGTH_FIELD + BODY_LENGTH;
+
+  // no frame may claim to be longer than this
+  public static final int MAX_BODY_LENGTH = 256;
+
+  private GameProtocol() {
+  }
+
+  // intends to write one complete frame at the buffer's position
+  public static void encode(ByteBuffer buffer, byte type, int sequence,
+      int value) {
+    buffer.putShort((short) BODY_LENGTH);
+    buffer.put(VERSION);
+    buffer.put(type);
+    buffer.putInt(sequence);
+    buffer.putInt(value);
+  }
+
+  // function intends to decode the next frame this version can read,
+  // starting at the buffer's position and skipping any it cannot.
+  // Returns false, leaving the position at the first frame which has
+  // not fully arrived yet, if there is no such frame. Throws
+  // IllegalArgumentException for a malformed length.
+  public static boolean decode(ByteBuffer buffer, GameMessage message) {
+    while (buffer.remaining() >= LENGTH_FIELD) {
+      int start = buffer.position();
+      int length = checkLength(buffer.getShort(start) & 0xFFFF);
+      if (buffer.remaining() < LENGTH_FIELD + length) {
+        return false;
+      }
+      buffer.position(start + LENGTH_FIELD + length);
+      if (decodeBody(buffer, start + LENGTH_FIELD, message)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // returns the length read from a length field, or throws
+  // IllegalArgumentException if no frame can be that long
+  public static int checkLength(int length) {
+    if (length < BODY_LENGTH || length > MAX_BODY_LENGTH) {
+      throw new IllegalArgumentException("Bad frame length " + length);
+    }
+    return length;
+  }
+
+  // function intends to read the body of a frame whose length field
+  // has already been read, starting at the given absolute index.
+  // Returns false if the frame is of another version or of a type
+  // this version does not know, in which case the caller skips it.
+  public static boolean decodeBody(ByteBuffer buffer, int index,
+      GameMessage message) {
+    byte version = buffer.get(index);
+    byte type = buffer.get(index + 1);
+    if (version != VERSION || type < MOVE || type > WATCH) {
+      return false;
+    }
+    message.type = type;
+    message.sequence = buffer.getInt(index + 2);
+    message.value = buffer.getInt(index + 6);
+    return true;
+  }
+}
@@ -0,0 +1,125 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class referees one game between the local player
+ * and the other side of a GameConnection, without any GUI attached.
+ * It holds the game state, plays the local player's moves and sends
+ * them across the connection, and applies the moves, restarts and
+ * turn swaps received in return. A view such as BoardFrame drives a
+ * session and only draws what it reports, while headless servers can
+ * run a session with no AWT classes loaded at all.
+ *
+ * */
+public class GameSession {
+
+  // establishing the sizes and winning conditions in constant
+  // form intends to make the game more expandable as these
+  // conditions can be changed here and alter the rules of the
+  // game for the boards, the servers and the computer player alike.
+  static final int ROWS = 6;
+  static final int COLS = 7;
+  static final int WINNING_SCORE = 4;
+
+  private static final Metrics.Histogram GAME_OVER_LATENCY =
+      Metrics.histogram("game.gameIsOver");
+
+  private final GameBoard game;
+  private final GameConnection connection;
+  private final GameState.colorType localColor;
+  private final GameState.colorType remoteColor;
+
+  // ensures that the end of a game is only reported once per game, so
+  // players may keep toying around with moves afterwards
+  private boolean gameOverReported = false;
+
+  public GameSession(GameConnection inConnection,
+      GameState.colorType inLocalColor) {
+    this(inConnection, inLocalColor, ROWS, COLS, WINNING_SCORE);
+  }
+
+  // a session on a board of any size, e.g. a big Connect-K board. Both
+  // sides must be started with the same dimensions.
+  public GameSession(GameConnection inConnection,
+      GameState.colorType inLocalColor, int rows, int cols,
+      int winningScore) {
+    game = GameBoard.create(rows, cols, winningScore);
+    connection = inConnection;
+    localColor = inLocalColor;
+    remoteColor = (localColor == GameState.colorType.RED)
+        ? GameState.colorType.YELLOW : GameState.colorType.RED;
+  }
+
+  // function intends to drop a local chip into the column and send
+  // the move to the other side. Returns the row the chip landed in.
+  public int playLocalMove(int column) {
+    int row = game.dropInColumn(column, localColor);
+    connection.sendMessage(GameProtocol.MOVE, column);
+    return row;
+  }
+
+  // intends to empty the board and ask the other side to do the same
+  public void restart() {
+    resetGame();
+    connection.sendMessage(GameProtocol.RESTART, 0);
+  }
+
+  // intends to hand the current turn over to the other side
+  public void swapTurn() {
+    connection.sendMessage(GameProtocol.SWAP_TURN, 0);
+  }
+
+  // function intends to block until the other side moves, and apply
+  // the received message to the game. Returns the row of a received
+  // chip, or -1 for a restart or turn swap.
+  public int receiveRemoteMove(GameMessage message) {
+    connection.receiveMessage(message);
+    return applyRemoteMove(message);
+  }
+
+  // function intends to apply a message already received from the
+  // other side, e.g. by a RemoteMoveReader. Returns the row of a
+  // received chip, or -1 for a restart or turn swap.
+  public int applyRemoteMove(GameMessage message) {
+    if (message.type == GameProtocol.RESTART) {
+      resetGame();
+    }
+    else if (message.type == GameProtocol.MOVE) {
+      return game.dropInColumn(message.value, remoteColor);
+    }
+    return -1;
+  }
+
+  // returns true the first time it is called after the game has been
+  // won or drawn, and false until the next restart after that
+  public boolean checkGameOver() {
+    if (gameOverReported) {
+      return false;
+    }
+    long start = System.nanoTime();
+    boolean over = game.gameIsOver();
+    GAME_OVER_LATENCY.recordSince(start);
+    gameOverReported = over;
+    return over;
+  }
+
+  private void resetGame() {
+    game.reset();
+    gameOverReported = false;
+  }
+
+  public GameConnection getConnection() {
+    return connection;
+  }
+
+  public GameBoard getState() {
+    return game;
+  }
+
+  public GameState.colorType getLocalColor() {
+    return localColor;
+  }
+
+  public GameState.colorType getRemoteColor() {
+    return remoteColor;
+  }
+}
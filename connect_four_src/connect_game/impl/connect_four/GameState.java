@@ -0,0 +1,293 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class holds the state of a connect four game
+ * without any of the GUI or networking attached to it. Each player's
+ * chips are stored as a packed long bitboard, together with a height
+ * for every column, so that dropping a chip, checking a column and
+ * looking for four-in-a-row are each a handful of shift and AND
+ * operations instead of walks over a grid of enum values.
+ *
+ * Bit layout: every column takes (rows + 1) consecutive bits, starting
+ * with the bottom square. The extra bit at the top of each column is
+ * never set, and keeps a run of chips from wrapping into the next
+ * column during the shift-based win checks. This means the board must
+ * satisfy cols * (rows + 1) <= 64; larger boards are played on a
+ * LargeGameState instead.
+ *
+ * */
+public class GameState implements GameBoard {
+
+  // enum serves to represent the color type of a given square on
+  // the board. This will be used to keep track of game conditions
+  enum colorType {UNKNOWN, RED, YELLOW};
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+
+  // bits per column (including the empty sentinel bit on top)
+  private final int height;
+
+  // one bit per playable square of the board, and the bottom square
+  // of each column
+  private final long boardMask;
+  private final long bottomMask;
+
+  // intends to keep the chips of each player in their own bitboard,
+  // the index of the height array is the column, and each value is
+  // the number of chips currently in that column
+  private long redBoard;
+  private long yellowBoard;
+  private final int[] columnHeights;
+  private int moveCount;
+
+  // the first color to complete a line since the last reset, found
+  // by only looking at the lines through each newly dropped chip
+  private colorType winner;
+
+  // Zobrist keys of the board and of its mirror image
+  private long zobrist;
+  private long mirroredZobrist;
+
+  public GameState(int inRows, int inCols, int inWinningScore) {
+    if (inRows < 1 || inCols < 1 || inWinningScore < 1) {
+      throw new IllegalArgumentException("Board dimensions must be positive");
+    }
+    if (inCols * (inRows + 1) > Long.SIZE) {
+      throw new IllegalArgumentException("A " + inRows + " x " + inCols
+          + " board does not fit in a 64 bit bitboard");
+    }
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    height = rows + 1;
+
+    // the bottom bit of every column repeated across the board, and
+    // multiplied into a full column to give the playable squares
+    long bottom = 0;
+    for (int c = 0; c < cols; c++) {
+      bottom |= 1L << (c * height);
+    }
+    bottomMask = bottom;
+    boardMask = bottomMask * ((1L << rows) - 1);
+
+    columnHeights = new int[cols];
+    reset();
+  }
+
+  // intends to empty the board so a new game can be started
+  public void reset() {
+    redBoard = 0;
+    yellowBoard = 0;
+    moveCount = 0;
+    winner = colorType.UNKNOWN;
+    zobrist = 0;
+    mirroredZobrist = 0;
+    for (int c = 0; c < cols; c++) {
+      columnHeights[c] = 0;
+    }
+  }
+
+  // function intends to place a chip of the given color on top of
+  // the given column. Returns the grid row (0 being the top row) the
+  // chip landed in, or -1 if the column was already full.
+  public int dropInColumn(int column, colorType color) {
+    if (columnIsFull(column)) {
+      return -1;
+    }
+    int position = column * height + columnHeights[column];
+    long move = 1L << position;
+    if (color == colorType.RED) {
+      redBoard |= move;
+    }
+    else if (color == colorType.YELLOW) {
+      yellowBoard |= move;
+    }
+    else {
+      throw new IllegalArgumentException("Cannot drop an UNKNOWN chip");
+    }
+    zobrist ^= Zobrist.square(column, columnHeights[column], color);
+    mirroredZobrist ^= Zobrist.mirrored(column, columnHeights[column], cols,
+        color);
+    columnHeights[column]++;
+    moveCount++;
+    if (winner == colorType.UNKNOWN && isWinningMove(position, color)) {
+      winner = color;
+    }
+    return rows - columnHeights[column];
+  }
+
+  // method intends to check only the four lines passing through the
+  // chip that was just placed, since no other square can have
+  // started a new win. Each line is walked at most winningScore - 1
+  // squares in each direction.
+  private boolean isWinningMove(int position, colorType color) {
+    long board = getBoard(color);
+    return 1 + countRun(board, position, 1) + countRun(board, position, -1)
+            >= winningScore
+        || 1 + countRun(board, position, height)
+            + countRun(board, position, -height) >= winningScore
+        || 1 + countRun(board, position, height - 1)
+            + countRun(board, position, 1 - height) >= winningScore
+        || 1 + countRun(board, position, height + 1)
+            + countRun(board, position, -height - 1) >= winningScore;
+  }
+
+  // counts the consecutive chips of a board stepping away from a
+  // position. The empty sentinel bit on top of each column stops any
+  // run from wrapping around into a neighbouring column.
+  private int countRun(long board, int position, int step) {
+    int count = 0;
+    int next = position + step;
+    while (count < winningScore - 1 && next >= 0 && next < Long.SIZE
+        && (board & (1L << next)) != 0) {
+      count++;
+      next += step;
+    }
+    return count;
+  }
+
+  // function intends to check if a column is fully filled
+  public boolean columnIsFull(int column) {
+    return columnHeights[column] == rows;
+  }
+
+  // the game ends in a draw once every square has been played
+  public boolean isFull() {
+    return moveCount == rows * cols;
+  }
+
+  // method intends to check whether the given color has a line of
+  // winningScore chips in any direction: vertical (shift by 1),
+  // horizontal (shift by a column), and both diagonals.
+  public boolean hasWon(colorType color) {
+    long board = getBoard(color);
+    return hasAlignment(board, 1)
+        || hasAlignment(board, height)
+        || hasAlignment(board, height - 1)
+        || hasAlignment(board, height + 1);
+  }
+
+  // AND-ing the board with copies of itself shifted along one
+  // direction leaves a bit set only where a full run starts. A run
+  // spanning 64 bits or more cannot fit on the board, and Java would
+  // wrap such a shift around to a short one.
+  private boolean hasAlignment(long board, int shift) {
+    long run = board;
+    for (int i = 1; i < winningScore && run != 0; i++) {
+      if (i * shift >= Long.SIZE) {
+        return false;
+      }
+      run &= board >>> (i * shift);
+    }
+    return run != 0;
+  }
+
+  // intends to ensure that the game has satisfied a current win or
+  // draw condition. The winner is kept up to date by every drop and
+  // a draw only needs the move counter, so this never rescans.
+  public boolean gameIsOver() {
+    return winner != colorType.UNKNOWN || isFull();
+  }
+
+  // returns the color that completed the first line of the game, or
+  // UNKNOWN if nobody has won yet
+  public colorType getWinner() {
+    return winner;
+  }
+
+  // returns the color of the square at (row, column), where row 0
+  // is the top of the board as it is displayed
+  public colorType getColor(int row, int column) {
+    long square = 1L << (column * height + (rows - 1 - row));
+    if ((redBoard & square) != 0) {
+      return colorType.RED;
+    }
+    if ((yellowBoard & square) != 0) {
+      return colorType.YELLOW;
+    }
+    return colorType.UNKNOWN;
+  }
+
+  public long getBoard(colorType color) {
+    if (color == colorType.RED) {
+      return redBoard;
+    }
+    if (color == colorType.YELLOW) {
+      return yellowBoard;
+    }
+    return ~(redBoard | yellowBoard) & boardMask;
+  }
+
+  // function intends to identify the position by a single long: the
+  // red chips plus, in every column, the bit just above its top chip.
+  // No two positions share a key, and no key is 0.
+  public long positionKey() {
+    return redBoard | ((redBoard | yellowBoard) + bottomMask);
+  }
+
+  // the key of the position or of its left-right mirror image,
+  // whichever is smaller, so that a position and its mirror image
+  // share one key
+  public long canonicalKey() {
+    long key = positionKey();
+    long mirrored = mirrorKey(key);
+    return Long.compareUnsigned(key, mirrored) <= 0 ? key : mirrored;
+  }
+
+  // reverses the order of the columns in a key
+  long mirrorKey(long key) {
+    // a shift by 64 would wrap, so a 64 bit column is made from -1
+    long column = -1L >>> (Long.SIZE - height);
+    long mirrored = 0;
+    for (int c = 0; c < cols; c++) {
+      long bits = (key >>> (c * height)) & column;
+      mirrored |= bits << ((cols - 1 - c) * height);
+    }
+    return mirrored;
+  }
+
+  public long zobristKey() {
+    return zobrist;
+  }
+
+  public long canonicalZobristKey() {
+    return Zobrist.canonical(zobrist, mirroredZobrist);
+  }
+
+  public int getColumnHeight(int column) {
+    return columnHeights[column];
+  }
+
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getCols() {
+    return cols;
+  }
+
+  public int getWinningScore() {
+    return winningScore;
+  }
+
+  // the board as text, top row first: R for red, Y for yellow chips
+  // and . for empty squares
+  public String toString() {
+    StringBuilder text = new StringBuilder((cols + 1) * rows);
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        colorType color = getColor(r, c);
+        text.append(color == colorType.RED ? 'R'
+            : color == colorType.YELLOW ? 'Y' : '.');
+      }
+      text.append('\n');
+    }
+    return text.toString();
+  }
+}
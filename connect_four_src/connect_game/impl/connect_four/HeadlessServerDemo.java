@@ -0,0 +1,114 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class runs a game server without any GUI, so it
+ * can be started on a machine with no display. By default it hosts a
+ * single game in which the computer plays red against one ClientDemo
+ * board, refereed by a GameSession over a ClientServerSocket. Given
+ * "relay" as the first argument it instead runs the multi-game
+ * NioGameServer for any number of ClientDemo boards, and given
+ * "threads" it runs the ThreadPerConnectionServer, which reads every
+ * board on a virtual thread of its own (or a platform thread with
+ * --platform, or in a Java 17 build). No mode touches
+ * BoardFrame, so no AWT classes are loaded and no images are decoded
+ * at startup. In computer mode, "deepening" after the time budget has
+ * the computer search by iterative deepening on one thread, which
+ * answers every move in exactly the time budget, and "ponder" has it
+ * search its answers to the client's replies while the client thinks
+ * (see Ponderer).
+ *
+ * Arguments: [computer|relay|threads] [port]
+ *            [time budget ms | event loops | --platform]
+ *            [deepening] [ponder]
+ * 
+ * */
+
+public class HeadlessServerDemo {
+
+  public static void main(String [] args) {
+    // Instantiates mode and port
+    String mode = args.length > 0 ? args[0] : "computer";
+    int portNumber = 45000;
+    if (args.length > 1) {
+      portNumber = Integer.parseInt(args[1]);
+    }
+
+    if (mode.equals("relay")) {
+      int eventLoops = Runtime.getRuntime().availableProcessors();
+      if (args.length > 2) {
+        eventLoops = Integer.parseInt(args[2]);
+      }
+      new NioGameServer(portNumber, eventLoops).start();
+      return;
+    }
+    if (mode.equals("threads")) {
+      boolean platformThreads = args.length > 2
+          && args[2].equals("--platform");
+      new ThreadPerConnectionServer(portNumber, platformThreads).start();
+      return;
+    }
+
+    long timeBudgetMillis = 1000;
+    if (args.length > 2) {
+      timeBudgetMillis = Long.parseLong(args[2]);
+    }
+    ComputerPlayer computer = new ComputerPlayer(GameSession.ROWS,
+        GameSession.COLS, GameSession.WINNING_SCORE,
+        GameState.colorType.RED, timeBudgetMillis,
+        Runtime.getRuntime().availableProcessors());
+    for (int i = 3; i < args.length; i++) {
+      if (args[i].equals("deepening")) {
+        computer.useIterativeDeepening();
+      }
+      else if (args[i].equals("ponder")) {
+        computer.enablePondering();
+      }
+    }
+    ClientServerSocket socket =
+        new ClientServerSocket("127.0.0.1", portNumber);
+    socket.startServer();
+    GameSession session = new GameSession(socket, GameState.colorType.RED);
+    playAgainstClient(session, computer);
+  }
+
+  // intends to alternate between the computer's move and the client's
+  // reply for as long as the client stays connected
+  private static void playAgainstClient(GameSession session,
+      ComputerPlayer computer) {
+    GameMessage message = new GameMessage();
+    while (true) {
+      // the computer chooses a move, which the session plays and
+      // sends to the client
+      computer.receiveMessage(message);
+      if (message.type == GameProtocol.MOVE) {
+        session.playLocalMove(message.value);
+      }
+      else {
+        session.swapTurn();
+      }
+      reportGameOver(session);
+
+      // the client's reply is applied by the session and mirrored
+      // on the computer's own copy of the board
+      session.receiveRemoteMove(message);
+      computer.sendMessage(message.type, message.value);
+      if (message.type == GameProtocol.RESTART) {
+        System.out.println("Client restarted the game.");
+      }
+      reportGameOver(session);
+    }
+  }
+
+  // prints the result once per game
+  private static void reportGameOver(GameSession session) {
+    if (session.checkGameOver()) {
+      GameState.colorType winner = session.getState().getWinner();
+      if (winner == GameState.colorType.UNKNOWN) {
+        System.out.println("That's game! The board is full: draw.");
+      }
+      else {
+        System.out.println("That's game! Winner: " + winner);
+      }
+    }
+  }
+}
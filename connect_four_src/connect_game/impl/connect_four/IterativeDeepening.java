@@ -0,0 +1,296 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class chooses the computer's column within a hard
+ * time budget by iterative deepening. It searches 1, 2, 3, ... moves
+ * ahead with alpha-beta negamax, scoring the positions where it stops
+ * by their threats (winning spots of the player to move minus those of
+ * the opponent), until the deadline passes. A column is ready from the
+ * start (the move ordering guess) and is replaced after every finished
+ * depth, or during a depth once the previous best move has been
+ * searched again and another beats it, so the answer is always there
+ * the moment the deadline passes. Proven wins and losses, and depths
+ * reaching the end of the game, finish the search early.
+ *
+ * Each depth reuses the move ordering of the one before: the root
+ * columns are tried in the order of their last scores, and every
+ * position remembers the move which last cut the search off or scored
+ * best there, which is tried first the next time around. The table of
+ * those moves is kept from one move of the game to the next.
+ *
+ * The search runs on the calling thread, so the CPU it costs per move
+ * is exactly the budget; the depth, positions and positions per second
+ * of the last move are available to report how much play the budget
+ * buys.
+ *
+ * */
+public class IterativeDeepening implements Ponderer.Search {
+
+  private static final Solver.SearchTimeout TIMEOUT =
+      new Solver.SearchTimeout();
+
+  // the deadline is checked once every this many nodes, a few hundred
+  // microseconds of search, so a move is never late by more than that
+  private static final long TIME_CHECK_MASK = 0xFF;
+
+  // scores of won and lost positions lie beyond this, threat counts
+  // well within it
+  private static final int WIN = 1000;
+
+  // 2^16 remembered moves take 1MB
+  private static final int ORDER_TABLE_SIZE = 1 << 16;
+
+  private final int rows;
+  private final int cols;
+  private final int squares;
+  private final int[] columnOrder;
+
+  // only used for its bitboard helpers, never for searching
+  private final Solver helper;
+
+  // the best move last found in a position, by position key
+  private final long[] orderKeys = new long[ORDER_TABLE_SIZE];
+  private final long[] orderMoves = new long[ORDER_TABLE_SIZE];
+
+  // per-ply scratch space for move ordering
+  private final long[][] sortedMoves;
+  private final int[][] sortedScores;
+
+  private long nodeCount;
+  private long deadline;
+
+  // set from another thread to end the search as if its deadline had
+  // passed
+  private volatile boolean stopped;
+
+  // summary of the last call to chooseColumn
+  private int lastDepth;
+  private int lastScore;
+  private long lastNanos;
+
+  public IterativeDeepening(int inRows, int inCols, int inWinningScore) {
+    rows = inRows;
+    cols = inCols;
+    squares = rows * cols;
+    helper = new Solver(rows, cols, inWinningScore,
+        new TranspositionTable(1));
+    columnOrder = helper.getColumnOrder();
+    sortedMoves = new long[squares + 1][cols];
+    sortedScores = new int[squares + 1][cols];
+  }
+
+  // function intends to pick the column for the player to move within
+  // the time budget. Returns -1 if no column can be played.
+  public int chooseColumn(GameState state, GameState.colorType toMove,
+      long timeBudgetMillis) {
+    long start = System.nanoTime();
+    deadline = start + timeBudgetMillis * 1000000L;
+    long current = state.getBoard(toMove);
+    long mask = state.getBoard(GameState.colorType.RED)
+        | state.getBoard(GameState.colorType.YELLOW);
+    int moves = state.getMoveCount();
+    nodeCount = 0;
+    lastDepth = 0;
+    lastScore = 0;
+
+    long possible = helper.possibleMoves(mask);
+    if (possible == 0) {
+      lastNanos = System.nanoTime() - start;
+      return -1;
+    }
+    long winning = helper.winningPositions(current, mask) & possible;
+    if (winning != 0) {
+      lastScore = WIN + squares - moves;
+      lastNanos = System.nanoTime() - start;
+      return helper.columnOf(winning);
+    }
+    int bestColumn = helper.guessColumn(current, mask, moves);
+    long candidates = helper.possibleNonLosingMoves(current, mask);
+    if (Long.bitCount(candidates) <= 1) {
+      // a single move to play, or every move loses
+      lastScore = (candidates == 0) ? -(WIN + squares - moves) : 0;
+      lastNanos = System.nanoTime() - start;
+      return bestColumn;
+    }
+
+    // the root moves, best guess first, in the order of the last depth
+    int count = sortMoves(current, mask, candidates, moves);
+    long[] rootMoves = sortedMoves[moves].clone();
+    int[] rootScores = new int[count];
+
+    try {
+      for (int depth = 1; depth <= squares - moves; depth++) {
+        int alpha = -Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+          int score = -negamax(current ^ mask, mask | rootMoves[i],
+              moves + 1, depth - 1, -Integer.MAX_VALUE, -alpha);
+          rootScores[i] = score;
+          if (score > alpha) {
+            alpha = score;
+            // the first move is last depth's best, so a later move is
+            // only taken once it has beaten that one at this depth
+            bestColumn = helper.columnOf(rootMoves[i]);
+            lastScore = score;
+          }
+        }
+        lastDepth = depth;
+        sortRoot(rootMoves, rootScores, count);
+        if (Math.abs(rootScores[0]) > WIN) {
+          break;
+        }
+      }
+    }
+    catch (Solver.SearchTimeout timeout) {
+      // the best column so far stands
+    }
+    lastNanos = System.nanoTime() - start;
+    return bestColumn;
+  }
+
+  // depth-limited negamax with alpha-beta pruning. Assumes the player
+  // to move cannot win immediately (the moves searched never allow it).
+  private int negamax(long current, long mask, int moves, int depth,
+      int alpha, int beta) {
+    nodeCount++;
+    if ((nodeCount & TIME_CHECK_MASK) == 0
+        && (stopped || System.nanoTime() > deadline)) {
+      throw TIMEOUT;
+    }
+
+    long next = helper.possibleNonLosingMoves(current, mask);
+    if (next == 0) {
+      // the opponent wins with the next chip
+      return -(WIN + squares - moves);
+    }
+    if (moves >= squares - 2) {
+      return 0;
+    }
+    if (depth == 0) {
+      return Long.bitCount(helper.winningPositions(current, mask))
+          - Long.bitCount(helper.winningPositions(current ^ mask, mask));
+    }
+
+    long key = current + mask;
+    int slot = orderSlot(key);
+    long[] moveList = sortedMoves[moves];
+    int count = sortMoves(current, mask, next, moves);
+
+    // the move remembered from the last depth goes first
+    if (orderKeys[slot] == key) {
+      for (int i = 1; i < count; i++) {
+        if (moveList[i] == orderMoves[slot]) {
+          System.arraycopy(moveList, 0, moveList, 1, i);
+          moveList[0] = orderMoves[slot];
+          break;
+        }
+      }
+    }
+
+    long bestMove = 0;
+    for (int i = 0; i < count; i++) {
+      long move = moveList[i];
+      int score = -negamax(current ^ mask, mask | move, moves + 1,
+          depth - 1, -beta, -alpha);
+      if (score >= beta) {
+        remember(slot, key, move);
+        return score;
+      }
+      if (score > alpha) {
+        alpha = score;
+        bestMove = move;
+      }
+    }
+    if (bestMove != 0) {
+      remember(slot, key, bestMove);
+    }
+    return alpha;
+  }
+
+  // method intends to sort the moves into sortedMoves[moves], most
+  // winning spots created first and centre first among equals, and
+  // return how many there are
+  private int sortMoves(long current, long mask, long candidates,
+      int moves) {
+    long[] moveList = sortedMoves[moves];
+    int[] scoreList = sortedScores[moves];
+    int count = 0;
+    for (int i = 0; i < cols; i++) {
+      long move = candidates & helper.columnMask(columnOrder[i]);
+      if (move != 0) {
+        int score = Long.bitCount(
+            helper.winningPositions(current | move, mask));
+        int j = count++;
+        while (j > 0 && scoreList[j - 1] < score) {
+          moveList[j] = moveList[j - 1];
+          scoreList[j] = scoreList[j - 1];
+          j--;
+        }
+        moveList[j] = move;
+        scoreList[j] = score;
+      }
+    }
+    return count;
+  }
+
+  // intends to order the root moves by their scores, best first; the
+  // sort is stable so ties keep the earlier order
+  private static void sortRoot(long[] rootMoves, int[] rootScores,
+      int count) {
+    for (int i = 1; i < count; i++) {
+      long move = rootMoves[i];
+      int score = rootScores[i];
+      int j = i;
+      while (j > 0 && rootScores[j - 1] < score) {
+        rootMoves[j] = rootMoves[j - 1];
+        rootScores[j] = rootScores[j - 1];
+        j--;
+      }
+      rootMoves[j] = move;
+      rootScores[j] = score;
+    }
+  }
+
+  private static int orderSlot(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 48);
+  }
+
+  private void remember(int slot, long key, long move) {
+    orderKeys[slot] = key;
+    orderMoves[slot] = move;
+  }
+
+  // intends to end the current and every later search at its next
+  // deadline check, until the search is resumed with false
+  public void setStopped(boolean inStopped) {
+    stopped = inStopped;
+  }
+
+  public long getNodeCount() {
+    return nodeCount;
+  }
+
+  // the deepest search finished during the last chooseColumn, 0 if
+  // the move was played without searching
+  public int getLastDepth() {
+    return lastDepth;
+  }
+
+  // positions searched per second during the last chooseColumn
+  public long getNodesPerSecond() {
+    return lastNanos == 0 ? 0 : nodeCount * 1000000000L / lastNanos;
+  }
+
+  public long getLastNanos() {
+    return lastNanos;
+  }
+
+  // true once the last chosen column was proven to win
+  public boolean lastMoveWins() {
+    return lastScore > WIN;
+  }
+
+  // true once every column was proven to lose
+  public boolean lastMoveLoses() {
+    return lastScore < -WIN;
+  }
+}
@@ -0,0 +1,102 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/*
+ * Description: Replays the games recorded in a GameJournal. By default
+ * every game is streamed through a GameState and the results are
+ * counted; given a game number (from 1) only that game is replayed,
+ * move by move, and its final board printed.
+ *
+ * Arguments: journal [game number]
+ *
+ * */
+public class JournalReplay {
+
+  public static void main(String [] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: JournalReplay journal [game number]");
+      System.exit(2);
+    }
+    long wanted = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+    long start = System.nanoTime();
+    long games = 0;
+    long moves = 0;
+    long redWins = 0;
+    long yellowWins = 0;
+    long draws = 0;
+    long bytes;
+    try (GameJournal.Reader reader =
+        new GameJournal.Reader(Paths.get(args[0]))) {
+      GameState state = new GameState(reader.getRows(), reader.getCols(),
+          reader.getWinningScore());
+      GameJournal.Game game = new GameJournal.Game(reader.getCols());
+      while (reader.next(game)) {
+        games++;
+        if (wanted != 0 && games != wanted) {
+          continue;
+        }
+        moves += replay(game, state, wanted != 0);
+        if (state.getWinner() == GameState.colorType.RED) {
+          redWins++;
+        }
+        else if (state.getWinner() == GameState.colorType.YELLOW) {
+          yellowWins++;
+        }
+        else if (state.isFull()) {
+          draws++;
+        }
+        if (wanted != 0) {
+          System.out.print(state);
+          System.out.println("Winner: " + state.getWinner());
+          return;
+        }
+      }
+      bytes = reader.getPosition();
+    }
+    if (wanted != 0) {
+      System.out.println("The journal only holds " + games + " games");
+      System.exit(1);
+    }
+
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    System.out.println(games + " games, " + moves + " moves, "
+        + bytes + " bytes, replayed in " + elapsedMillis
+        + " ms");
+    System.out.println("red won " + redWins + ", yellow won " + yellowWins
+        + ", drawn " + draws + ", unfinished "
+        + (games - redWins - yellowWins - draws));
+  }
+
+  // function intends to play the recorded game on the board, red
+  // first, each move or swap handing the turn over. Returns the
+  // number of moves played.
+  static int replay(GameJournal.Game game, GameState state, boolean print) {
+    state.reset();
+    GameState.colorType turn = GameState.colorType.RED;
+    int moves = 0;
+    for (int i = 0; i < game.getEventCount(); i++) {
+      int event = game.getEvent(i);
+      if (event == game.getRestart() || event == game.getClose()) {
+        if (print) {
+          System.out.println(event == game.getRestart()
+              ? "restarted" : "connection closed");
+        }
+        break;
+      }
+      if (event != game.getSwap()) {
+        state.dropInColumn(event, turn);
+        moves++;
+      }
+      if (print) {
+        System.out.println(event == game.getSwap() ? turn + " swapped"
+            : turn + " played column " + event);
+      }
+      turn = (turn == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+    return moves;
+  }
+}
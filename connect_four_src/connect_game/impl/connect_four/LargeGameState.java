@@ -0,0 +1,240 @@
+package connect_game.impl.connect_four;
+
+import java.util.Arrays;
+
+/*
+ * Description: The state of a Connect-K game on a board too large for
+ * a bitboard, e.g. 1000 x 1000 with a winning score of 5 or 6. Only
+ * the chips placed are stored, in an open-addressing hash table keyed
+ * by square, so memory and the cost of a move grow with the number of
+ * chips played rather than with the area of the board; the only
+ * per-board array is the height of every column.
+ *
+ * Lines are tracked incrementally. For each of the four directions,
+ * the two chips at the ends of every run of one color store the
+ * length of the run. A new chip joins the run ending next to it on
+ * either side, and only the new far ends (and the chip itself) are
+ * updated, so a drop reads and writes a fixed number of squares
+ * whatever the size of the board or the length of the runs.
+ *
+ * Squares are numbered column * rows + height, where height 0 is the
+ * bottom of the column.
+ *
+ * */
+public class LargeGameState implements GameBoard {
+
+  // column and height steps of the vertical, horizontal and both
+  // diagonal directions
+  private static final int[] COLUMN_STEP = {0, 1, 1, 1};
+  private static final int[] HEIGHT_STEP = {1, 0, 1, -1};
+  private static final int DIRECTIONS = 4;
+
+  private static final int INITIAL_SLOTS = 1 << 10;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int[] columnHeights;
+  private int moveCount;
+  private GameState.colorType winner;
+
+  // Zobrist keys of the board and of its mirror image
+  private long zobrist;
+  private long mirroredZobrist;
+
+  // the hash table of placed chips: square + 1 (0 for an empty slot),
+  // the chip's color and, for each direction, the length of its run
+  // (only kept up to date at the ends of a run)
+  private int[] squares;
+  private byte[] colors;
+  private int[] runs;
+  private int used;
+
+  public LargeGameState(int inRows, int inCols, int inWinningScore) {
+    if (inRows < 1 || inCols < 1 || inWinningScore < 1) {
+      throw new IllegalArgumentException("Board dimensions must be positive");
+    }
+    if ((long) inRows * inCols >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A " + inRows + " x " + inCols
+          + " board has too many squares");
+    }
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    columnHeights = new int[cols];
+    allocate(INITIAL_SLOTS);
+    reset();
+  }
+
+  // intends to empty the board. Clearing the table costs as much as
+  // the chips it held, not the board area.
+  public void reset() {
+    Arrays.fill(squares, 0);
+    Arrays.fill(columnHeights, 0);
+    used = 0;
+    moveCount = 0;
+    winner = GameState.colorType.UNKNOWN;
+    zobrist = 0;
+    mirroredZobrist = 0;
+  }
+
+  public int dropInColumn(int column, GameState.colorType color) {
+    if (color != GameState.colorType.RED
+        && color != GameState.colorType.YELLOW) {
+      throw new IllegalArgumentException("Cannot drop an UNKNOWN chip");
+    }
+    if (columnIsFull(column)) {
+      return -1;
+    }
+    int height = columnHeights[column];
+    if ((used + 1) * 2 > squares.length) {
+      allocate(squares.length * 2);
+    }
+    int slot = insert(column * rows + height, color);
+    columnHeights[column]++;
+    moveCount++;
+    zobrist ^= Zobrist.square(column, height, color);
+    mirroredZobrist ^= Zobrist.mirrored(column, height, cols, color);
+
+    // method intends to join the chip to the runs next to it in every
+    // direction, and note the joined run's length at both of its ends
+    for (int d = 0; d < DIRECTIONS; d++) {
+      int before = runEndingAt(column - COLUMN_STEP[d],
+          height - HEIGHT_STEP[d], d, color);
+      int after = runEndingAt(column + COLUMN_STEP[d],
+          height + HEIGHT_STEP[d], d, color);
+      int length = before + 1 + after;
+      runs[slot * DIRECTIONS + d] = length;
+      if (before > 0) {
+        setRun(column - before * COLUMN_STEP[d],
+            height - before * HEIGHT_STEP[d], d, length);
+      }
+      if (after > 0) {
+        setRun(column + after * COLUMN_STEP[d],
+            height + after * HEIGHT_STEP[d], d, length);
+      }
+      if (length >= winningScore && winner == GameState.colorType.UNKNOWN) {
+        winner = color;
+      }
+    }
+    return rows - columnHeights[column];
+  }
+
+  // the length of the run of the color whose end is the given square,
+  // 0 if the square is off the board, empty or of the other color. A
+  // chip next to an empty square is always the end of its run.
+  private int runEndingAt(int column, int height, int direction,
+      GameState.colorType color) {
+    if (column < 0 || column >= cols || height < 0
+        || height >= columnHeights[column]) {
+      return 0;
+    }
+    int slot = find(column * rows + height);
+    if (colors[slot] != (byte) color.ordinal()) {
+      return 0;
+    }
+    return runs[slot * DIRECTIONS + direction];
+  }
+
+  private void setRun(int column, int height, int direction, int length) {
+    runs[find(column * rows + height) * DIRECTIONS + direction] = length;
+  }
+
+  public boolean columnIsFull(int column) {
+    return columnHeights[column] == rows;
+  }
+
+  public boolean isFull() {
+    return moveCount == (long) rows * cols;
+  }
+
+  public boolean gameIsOver() {
+    return winner != GameState.colorType.UNKNOWN || isFull();
+  }
+
+  public GameState.colorType getWinner() {
+    return winner;
+  }
+
+  public GameState.colorType getColor(int row, int column) {
+    int height = rows - 1 - row;
+    if (height >= columnHeights[column]) {
+      return GameState.colorType.UNKNOWN;
+    }
+    return GameState.colorType.values()[colors[find(column * rows + height)]];
+  }
+
+  public long zobristKey() {
+    return zobrist;
+  }
+
+  public long canonicalZobristKey() {
+    return Zobrist.canonical(zobrist, mirroredZobrist);
+  }
+
+  public int getColumnHeight(int column) {
+    return columnHeights[column];
+  }
+
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getCols() {
+    return cols;
+  }
+
+  public int getWinningScore() {
+    return winningScore;
+  }
+
+  // returns the slot holding the square, or the empty slot where it
+  // belongs. Linear probing from a mixed hash of the square.
+  private int find(int square) {
+    int mask = squares.length - 1;
+    int index = mix(square) & mask;
+    while (squares[index] != 0 && squares[index] != square + 1) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private static int mix(int square) {
+    int hash = square * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private int insert(int square, GameState.colorType color) {
+    int slot = find(square);
+    squares[slot] = square + 1;
+    colors[slot] = (byte) color.ordinal();
+    used++;
+    return slot;
+  }
+
+  // intends to move every chip into a table of the given size
+  private void allocate(int slots) {
+    int[] oldSquares = squares;
+    byte[] oldColors = colors;
+    int[] oldRuns = runs;
+    squares = new int[slots];
+    colors = new byte[slots];
+    runs = new int[slots * DIRECTIONS];
+    if (oldSquares == null) {
+      return;
+    }
+    for (int i = 0; i < oldSquares.length; i++) {
+      if (oldSquares[i] != 0) {
+        int slot = find(oldSquares[i] - 1);
+        squares[slot] = oldSquares[i];
+        colors[slot] = oldColors[i];
+        System.arraycopy(oldRuns, i * DIRECTIONS, runs, slot * DIRECTIONS,
+            DIRECTIONS);
+      }
+    }
+  }
+}
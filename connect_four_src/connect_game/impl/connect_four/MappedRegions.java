@@ -0,0 +1,106 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Description: A file mapped into memory as a row of 1GB regions, so
+ * that files larger than a single MappedByteBuffer can be read and
+ * written with long offsets. Values are longs and ints at offsets
+ * aligned to their size, so none ever straddles two regions. A
+ * writable file grows in steps of 64MB as more of it is needed.
+ *
+ * */
+class MappedRegions {
+  private static final int REGION_SHIFT = 30;
+  private static final long REGION_BYTES = 1L << REGION_SHIFT;
+  private static final long OFFSET_MASK = REGION_BYTES - 1;
+  private static final long GROWTH_BYTES = 64L << 20;
+
+  private final FileChannel channel;
+  private final boolean readOnly;
+  private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+  private long mappedBytes = 0;
+
+  // intends to map the whole file, created if a writable file does
+  // not exist yet
+  MappedRegions(Path file, boolean inReadOnly) throws IOException {
+    readOnly = inReadOnly;
+    channel = readOnly
+        ? FileChannel.open(file, StandardOpenOption.READ)
+        : FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    map(channel.size());
+  }
+
+  // makes sure the first bytes of the file are mapped, growing a
+  // writable file if needed
+  void ensure(long bytes) throws IOException {
+    if (bytes > mappedBytes) {
+      if (readOnly) {
+        throw new IOException("Read past the end of a read-only file");
+      }
+      map((bytes + GROWTH_BYTES - 1) / GROWTH_BYTES * GROWTH_BYTES);
+    }
+  }
+
+  // maps the regions covering the given size; a partly mapped last
+  // region is mapped again at its new length
+  private void map(long bytes) throws IOException {
+    int count = (int) ((bytes + REGION_BYTES - 1) >>> REGION_SHIFT);
+    int first = (int) (mappedBytes >>> REGION_SHIFT);
+    regions = Arrays.copyOf(regions, count);
+    FileChannel.MapMode mode = readOnly
+        ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+    for (int i = first; i < count; i++) {
+      long start = (long) i << REGION_SHIFT;
+      regions[i] = channel.map(mode, start,
+          Math.min(REGION_BYTES, bytes - start));
+    }
+    mappedBytes = bytes;
+  }
+
+  long getMappedBytes() {
+    return mappedBytes;
+  }
+
+  long getLong(long offset) {
+    return regions[(int) (offset >>> REGION_SHIFT)]
+        .getLong((int) (offset & OFFSET_MASK));
+  }
+
+  void putLong(long offset, long value) {
+    regions[(int) (offset >>> REGION_SHIFT)]
+        .putLong((int) (offset & OFFSET_MASK), value);
+  }
+
+  int getInt(long offset) {
+    return regions[(int) (offset >>> REGION_SHIFT)]
+        .getInt((int) (offset & OFFSET_MASK));
+  }
+
+  void putInt(long offset, int value) {
+    regions[(int) (offset >>> REGION_SHIFT)]
+        .putInt((int) (offset & OFFSET_MASK), value);
+  }
+
+  // intends to write out a writable file, cut back to the given
+  // length (or left as it is for a negative length), and close it.
+  // The regions are not touched again after this.
+  void close(long length) throws IOException {
+    if (!readOnly) {
+      for (MappedByteBuffer region : regions) {
+        region.force();
+      }
+      regions = new MappedByteBuffer[0];
+      if (length >= 0) {
+        channel.truncate(length);
+      }
+    }
+    channel.close();
+  }
+}
@@ -0,0 +1,102 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Description: Pairs players into games as they arrive, from any
+ * number of threads at once and without locks. Players wait in
+ * lock-free queues, one per skill bucket, so only players of similar
+ * skill meet; with a single bucket everybody is paired in arrival
+ * order. As in a two-board game, where the server is red and the
+ * client who joins it is yellow, the player who has waited longer
+ * plays red and moves first.
+ *
+ * Every bucket counts the players ever added to it. A join adds its
+ * player to the queue before counting it, so whichever join brings
+ * the count to an even number knows two unpaired players are queued
+ * and takes them both, and a match is started on that thread at once.
+ * No thread ever waits for another, and no two threads can take the
+ * same player.
+ *
+ * */
+public class Matchmaker<T> {
+
+  // intends to check waiting players and start the matches made
+  public interface Listener<T> {
+    // false for a player who disconnected while waiting. A socket
+    // stays open on this side after its peer has gone, so this has to
+    // read from the connection rather than ask whether it is open.
+    boolean stillWaiting(T player);
+
+    void startMatch(T red, T yellow);
+  }
+
+  private final Listener<T> listener;
+  private final int bucketWidth;
+  private final Bucket<T>[] buckets;
+
+  // a single bucket: players are paired in arrival order, whatever
+  // their skill
+  public Matchmaker(Listener<T> inListener) {
+    this(inListener, 1, Integer.MAX_VALUE);
+  }
+
+  // skills 0 to bucketCount * bucketWidth - 1 are split into buckets
+  // of the given width; lower and higher skills join the end buckets
+  @SuppressWarnings("unchecked")
+  public Matchmaker(Listener<T> inListener, int bucketCount,
+      int inBucketWidth) {
+    if (bucketCount < 1 || inBucketWidth < 1) {
+      throw new IllegalArgumentException("Bad skill buckets");
+    }
+    listener = inListener;
+    bucketWidth = inBucketWidth;
+    buckets = (Bucket<T>[]) new Bucket<?>[bucketCount];
+    for (int i = 0; i < bucketCount; i++) {
+      buckets[i] = new Bucket<T>();
+    }
+  }
+
+  // intends to queue a player of unknown skill
+  public void join(T player) {
+    join(player, 0);
+  }
+
+  // function intends to queue the player in the bucket of their skill,
+  // starting a match right away if an opponent is already waiting
+  public void join(T player, int skill) {
+    Bucket<T> bucket = buckets[bucketOf(skill)];
+    bucket.waiting.offer(player);
+    if ((bucket.joins.incrementAndGet() & 1) != 0) {
+      return;
+    }
+    // both polls succeed: every join counted so far has been queued,
+    // and each even count takes out exactly two players
+    T red = bucket.waiting.poll();
+    T yellow = bucket.waiting.poll();
+    boolean redWaiting = listener.stillWaiting(red);
+    boolean yellowWaiting = listener.stillWaiting(yellow);
+    if (redWaiting && yellowWaiting) {
+      listener.startMatch(red, yellow);
+    }
+    // a player whose opponent has left joins again, at the back
+    else if (redWaiting) {
+      join(red, skill);
+    }
+    else if (yellowWaiting) {
+      join(yellow, skill);
+    }
+  }
+
+  private int bucketOf(int skill) {
+    int bucket = Math.max(0, skill) / bucketWidth;
+    return Math.min(bucket, buckets.length - 1);
+  }
+
+  // the players waiting at one skill level
+  private static class Bucket<T> {
+    final ConcurrentLinkedQueue<T> waiting = new ConcurrentLinkedQueue<T>();
+    final AtomicLong joins = new AtomicLong();
+  }
+}
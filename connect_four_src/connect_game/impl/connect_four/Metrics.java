@@ -0,0 +1,291 @@
+package connect_game.impl.connect_four;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Description: Counters and latency histograms for the paths whose
+ * timing matters to players: sending and receiving messages, the time
+ * from a move to the repaint that shows it, checking for the end of
+ * the game and painting the board. They are cheap enough to stay on
+ * all the time: recording a latency is two clock reads and a few
+ * atomic adds into arrays allocated when the instrument is created,
+ * so nothing is allocated per event.
+ *
+ * Histograms keep HDR-style buckets: values below 64 ns are counted
+ * exactly, and above that every power of two is split into 32
+ * buckets, so percentiles are within about 3% of the true values from
+ * nanoseconds up to hours, in 15KB per histogram.
+ *
+ * Every instrument is registered with the platform MBean server under
+ * connect_game.impl.connect_four:type=Counter|Latency,name=<name>, so
+ * jconsole or any JMX client can watch it. Started with
+ * -Dconnect_four.metrics.dumpSeconds=N, a daemon thread also prints
+ * all of them to the console every N seconds.
+ *
+ * */
+public class Metrics {
+  private static final String DOMAIN = "connect_game.impl.connect_four";
+  private static final String DUMP_PROPERTY =
+      "connect_four.metrics.dumpSeconds";
+
+  private static final Map<String, Counter> counters =
+      new ConcurrentHashMap<String, Counter>();
+  private static final Map<String, Histogram> histograms =
+      new ConcurrentHashMap<String, Histogram>();
+
+  static {
+    int dumpSeconds = Integer.getInteger(DUMP_PROPERTY, 0);
+    if (dumpSeconds > 0) {
+      Thread dumper = new Thread(() -> dumpEvery(dumpSeconds * 1000L),
+          "metrics-dump");
+      dumper.setDaemon(true);
+      dumper.start();
+    }
+  }
+
+  private Metrics() {
+  }
+
+  // function intends to return the counter with the given name,
+  // creating and registering it the first time it is asked for
+  public static Counter counter(String name) {
+    return counters.computeIfAbsent(name, key -> {
+      Counter counter = new Counter(key);
+      register("Counter", key, counter);
+      return counter;
+    });
+  }
+
+  // function intends to return the latency histogram with the given
+  // name, creating and registering it the first time it is asked for
+  public static Histogram histogram(String name) {
+    return histograms.computeIfAbsent(name, key -> {
+      Histogram histogram = new Histogram(key);
+      register("Latency", key, histogram);
+      return histogram;
+    });
+  }
+
+  // returns one line per instrument, sorted by name
+  public static String dump() {
+    StringBuilder text = new StringBuilder();
+    for (Counter counter : new ConcurrentSkipListMap<String, Counter>(
+        counters).values()) {
+      text.append(counter).append('\n');
+    }
+    for (Histogram histogram : new ConcurrentSkipListMap<String, Histogram>(
+        histograms).values()) {
+      text.append(histogram).append('\n');
+    }
+    return text.toString();
+  }
+
+  private static void register(String type, String name, Object bean) {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(bean,
+          new ObjectName(DOMAIN + ":type=" + type + ",name=" + name));
+    }
+    catch (JMException error) {
+      // the instrument still counts, it is just not visible over JMX
+      System.out.println("Error: cannot register " + name + " with JMX: "
+          + error.getMessage());
+    }
+  }
+
+  private static void dumpEvery(long periodMillis) {
+    try {
+      while (true) {
+        Thread.sleep(periodMillis);
+        String text = dump();
+        if (!text.isEmpty()) {
+          System.out.print("--- metrics ---\n" + text);
+        }
+      }
+    }
+    catch (InterruptedException interrupted) {
+      // the dump thread only stops with the program
+    }
+  }
+
+  public interface CounterMBean {
+    long getCount();
+
+    void reset();
+  }
+
+  // counts events, e.g. frames sent
+  public static class Counter implements CounterMBean {
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String inName) {
+      name = inName;
+    }
+
+    public void increment() {
+      count.incrementAndGet();
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public void reset() {
+      count.set(0);
+    }
+
+    public String toString() {
+      return name + " count=" + count.get();
+    }
+  }
+
+  public interface HistogramMBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+  }
+
+  // records latencies in nanoseconds
+  public static class Histogram implements HistogramMBean {
+    // 2^5 buckets per power of two, exact below 2^6
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS =
+        (63 - SUB_BITS) * SUB_COUNT + 2 * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String inName) {
+      name = inName;
+    }
+
+    // method intends to record the time since the given System.nanoTime
+    // reading
+    public void recordSince(long startNanos) {
+      record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      buckets.incrementAndGet(bucketOf(nanos));
+      count.incrementAndGet();
+      total.addAndGet(nanos);
+      long seen = max.get();
+      while (nanos > seen && !max.compareAndSet(seen, nanos)) {
+        seen = max.get();
+      }
+    }
+
+    // values below 2 * SUB_COUNT have a bucket each; above, the value
+    // is shifted down until it has SUB_BITS + 1 significant bits
+    static int bucketOf(long nanos) {
+      int magnitude = 63 - Long.numberOfLeadingZeros(nanos | 1);
+      if (magnitude <= SUB_BITS) {
+        return (int) nanos;
+      }
+      int shift = magnitude - SUB_BITS;
+      return shift * SUB_COUNT + (int) (nanos >>> shift);
+    }
+
+    // the largest value counted in the bucket
+    static long highestIn(int bucket) {
+      if (bucket < 2 * SUB_COUNT) {
+        return bucket;
+      }
+      int shift = bucket / SUB_COUNT - 1;
+      long lowest = (long) (bucket % SUB_COUNT + SUB_COUNT) << shift;
+      return lowest + (1L << shift) - 1;
+    }
+
+    // function intends to return the value, in nanoseconds, which the
+    // given fraction of the recorded values do not exceed
+    public long percentile(double fraction) {
+      long recorded = count.get();
+      if (recorded == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(fraction * recorded));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank) {
+          return Math.min(highestIn(i), max.get());
+        }
+      }
+      return max.get();
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public double getMeanMicros() {
+      long recorded = count.get();
+      return recorded == 0 ? 0 : total.get() / 1000.0 / recorded;
+    }
+
+    public double getP50Micros() {
+      return percentile(0.5) / 1000.0;
+    }
+
+    public double getP90Micros() {
+      return percentile(0.9) / 1000.0;
+    }
+
+    public double getP99Micros() {
+      return percentile(0.99) / 1000.0;
+    }
+
+    public double getP999Micros() {
+      return percentile(0.999) / 1000.0;
+    }
+
+    public double getMaxMicros() {
+      return max.get() / 1000.0;
+    }
+
+    // intends to start counting afresh; values recorded while the
+    // reset runs may be kept or lost
+    public void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets.set(i, 0);
+      }
+      count.set(0);
+      total.set(0);
+      max.set(0);
+    }
+
+    public String toString() {
+      return String.format("%s count=%d mean=%.1fus p50=%.1fus p90=%.1fus"
+          + " p99=%.1fus p99.9=%.1fus max=%.1fus", name, getCount(),
+          getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(),
+          getP999Micros(), getMaxMicros());
+    }
+  }
+}
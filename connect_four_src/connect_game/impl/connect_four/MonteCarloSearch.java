@@ -0,0 +1,398 @@
+package connect_game.impl.connect_four;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Description: This class chooses moves by Monte Carlo tree search,
+ * for boards where the exact Solver cannot see far enough: boards too
+ * large for a bitboard, or rules (ROWS, COLS, WINNING_SCORE) whose
+ * games are too long to solve. Until the time budget runs out, every
+ * thread repeatedly walks down one shared tree, choosing children by
+ * UCT, then finishes the game with random moves and adds the result
+ * to every node it passed. The root column visited most is played, so
+ * the more playouts the budget allows, the stronger the move.
+ *
+ * The tree lives in preallocated arrays indexed by node, reused from
+ * one move to the next, so searching allocates nothing per node or
+ * playout. The children of a node take consecutive indexes. A node's
+ * visits (high 32 bits) and points (low 32 bits: 2 for a win, 1 for a
+ * draw, from the side which moved into it) are one long updated with
+ * a single atomic add, so threads never lock. A thread adds its visit
+ * on the way down and its points only at the end, so until then the
+ * node looks like a loss to the other threads (virtual loss) and they
+ * spread out over other branches. A node is expanded by the first
+ * thread to claim it once it has been visited EXPAND_VISITS times, and
+ * expansion stops when the arrays are full.
+ *
+ * Only columns within WINNING_SCORE - 1 of a played column are
+ * considered, in the tree and in playouts, since a chip further away
+ * cannot share a line with any other; on a 1000 column board this
+ * keeps the search around the chips. Playouts still unfinished after
+ * PLAYOUT_LIMIT moves count as draws.
+ *
+ * */
+public class MonteCarloSearch {
+
+  // 2^21 nodes take about 40MB
+  private static final int DEFAULT_CAPACITY = 1 << 21;
+
+  private static final int EXPAND_VISITS = 4;
+  private static final int PLAYOUT_LIMIT = 200;
+  private static final double EXPLORATION = 1.0;
+
+  // deepest path followed down the tree
+  private static final int MAX_DEPTH = 1024;
+
+  private static final long VISIT = 1L << 32;
+  private static final long POINTS = VISIT - 1;
+
+  private static final int ROOT = 0;
+  private static final int UNEXPANDED = -1;
+  private static final int EXPANDING = -2;
+  private static final int NOT_EXPANDABLE = -3;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int threads;
+  private final int capacity;
+
+  // the tree: visits and points, index of the first child (or one of
+  // the negative states above), number of children and the column
+  // played to reach the node
+  private final AtomicLongArray stats;
+  private final AtomicIntegerArray firstChild;
+  private final int[] childCount;
+  private final int[] columns;
+  private final AtomicInteger nextNode = new AtomicInteger();
+
+  // null with a single thread, which searches on the caller's thread
+  private final ForkJoinPool pool;
+  private final ThreadLocal<Worker> workers;
+
+  // the position being searched, as its chips and the side to move
+  private int[] rootColumns;
+  private GameState.colorType[] rootColors;
+  private GameState.colorType rootToMove;
+  private long deadline;
+
+  private final AtomicLong playoutCount = new AtomicLong();
+  private double lastWinRate;
+
+  public MonteCarloSearch(int inRows, int inCols, int inWinningScore,
+      int inThreads) {
+    this(inRows, inCols, inWinningScore, inThreads, DEFAULT_CAPACITY);
+  }
+
+  public MonteCarloSearch(int inRows, int inCols, int inWinningScore,
+      int inThreads, int inCapacity) {
+    if (inThreads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed");
+    }
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    threads = inThreads;
+    capacity = inCapacity;
+    stats = new AtomicLongArray(capacity);
+    firstChild = new AtomicIntegerArray(capacity);
+    childCount = new int[capacity];
+    columns = new int[capacity];
+    pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+    workers = ThreadLocal.withInitial(Worker::new);
+  }
+
+  // function intends to pick the column for the player to move within
+  // the time budget. Returns -1 if no column can be played.
+  public int chooseColumn(GameBoard state, GameState.colorType toMove,
+      long timeBudgetMillis) {
+    if (state.getRows() != rows || state.getCols() != cols
+        || state.getWinningScore() != winningScore) {
+      throw new IllegalArgumentException("The search was set up for a "
+          + rows + " x " + cols + " board");
+    }
+    deadline = System.nanoTime() + timeBudgetMillis * 1000000L;
+    playoutCount.set(0);
+    lastWinRate = 0;
+    if (state.gameIsOver()) {
+      return -1;
+    }
+    snapshot(state, toMove);
+
+    nextNode.set(ROOT + 1);
+    stats.set(ROOT, 0);
+    firstChild.set(ROOT, UNEXPANDED);
+    Worker worker = workers.get();
+    worker.replayRoot();
+    int first = expand(ROOT, worker);
+    if (first < 0) {
+      throw new IllegalStateException("The tree cannot hold the root's "
+          + "children");
+    }
+    if (childCount[ROOT] == 1) {
+      return columns[first];
+    }
+
+    if (pool == null) {
+      playoutCount.addAndGet(worker.search());
+    }
+    else {
+      List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+      for (int i = 0; i < threads; i++) {
+        tasks.add(() -> workers.get().search());
+      }
+      for (Future<Long> result : pool.invokeAll(tasks)) {
+        playoutCount.addAndGet(getResult(result));
+      }
+    }
+
+    // the most visited child is the most trusted one
+    int best = first;
+    for (int child = first; child < first + childCount[ROOT]; child++) {
+      if ((stats.get(child) >>> 32) > (stats.get(best) >>> 32)) {
+        best = child;
+      }
+    }
+    long visits = stats.get(best) >>> 32;
+    lastWinRate = (visits == 0) ? 0
+        : (stats.get(best) & POINTS) / (2.0 * visits);
+    return columns[best];
+  }
+
+  // intends to record the chips of the position column by column; the
+  // order they are replayed in does not matter since every drop names
+  // its color, and a game still in play has no line in any order
+  private void snapshot(GameBoard state, GameState.colorType toMove) {
+    rootColumns = new int[state.getMoveCount()];
+    rootColors = new GameState.colorType[state.getMoveCount()];
+    int chips = 0;
+    for (int c = 0; c < cols; c++) {
+      for (int h = 0; h < state.getColumnHeight(c); h++) {
+        rootColumns[chips] = c;
+        rootColors[chips] = state.getColor(rows - 1 - h, c);
+        chips++;
+      }
+    }
+    rootToMove = toMove;
+  }
+
+  // function intends to create the children of a node from the worker's
+  // board, unless another thread is already doing so or the arrays are
+  // full. Returns the first child, or a negative value if the node was
+  // not expanded.
+  private int expand(int node, Worker worker) {
+    if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+      return -1;
+    }
+    int count = worker.candidates();
+    int first;
+    do {
+      first = nextNode.get();
+      if (count == 0 || first + count > capacity) {
+        firstChild.set(node, NOT_EXPANDABLE);
+        return -1;
+      }
+    } while (!nextNode.compareAndSet(first, first + count));
+
+    // the arrays still hold the last search's tree, so every field of
+    // a new child is written before the volatile write publishing them
+    for (int i = 0; i < count; i++) {
+      columns[first + i] = worker.moves[i];
+      childCount[first + i] = 0;
+      stats.set(first + i, 0);
+      firstChild.set(first + i, UNEXPANDED);
+    }
+    childCount[node] = count;
+    firstChild.set(node, first);
+    return first;
+  }
+
+  // returns the child with the best UCT value, trying every child once
+  // before any of them twice
+  private int select(int node, int first) {
+    double logVisits = Math.log(stats.get(node) >>> 32);
+    int best = first;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int child = first; child < first + childCount[node]; child++) {
+      long childStats = stats.get(child);
+      long visits = childStats >>> 32;
+      if (visits == 0) {
+        return child;
+      }
+      double value = (childStats & POINTS) / (2.0 * visits)
+          + EXPLORATION * Math.sqrt(logVisits / visits);
+      if (value > bestValue) {
+        bestValue = value;
+        best = child;
+      }
+    }
+    return best;
+  }
+
+  private Long getResult(Future<Long> result) {
+    try {
+      return result.get();
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      return 0L;
+    }
+    catch (ExecutionException error) {
+      throw new IllegalStateException("Search task failed", error.getCause());
+    }
+  }
+
+  private static GameState.colorType opponent(GameState.colorType color) {
+    return (color == GameState.colorType.RED)
+        ? GameState.colorType.YELLOW : GameState.colorType.RED;
+  }
+
+  // intends to stop the pool threads once the search is not needed
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  // playouts run by all threads during the last chooseColumn
+  public long getPlayoutCount() {
+    return playoutCount.get();
+  }
+
+  // tree nodes in use after the last chooseColumn
+  public int getNodeCount() {
+    return nextNode.get();
+  }
+
+  // the share of points the chosen column scored in its playouts
+  public double getLastWinRate() {
+    return lastWinRate;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  // the board, random numbers and scratch space of one search thread
+  private final class Worker {
+    private final GameBoard board = GameBoard.create(rows, cols,
+        winningScore);
+    private final SplittableRandom random = new SplittableRandom();
+    private final int[] path = new int[MAX_DEPTH];
+    private final int[] moves = new int[cols];
+
+    // the range of columns worth playing: within winningScore - 1 of
+    // the leftmost and rightmost chips
+    private int low;
+    private int high;
+
+    // method intends to run playouts until the deadline and return how
+    // many were run
+    long search() {
+      long playouts = 0;
+      do {
+        playout();
+        playouts++;
+      } while (System.nanoTime() < deadline);
+      return playouts;
+    }
+
+    // method intends to run one playout: down the tree from the root,
+    // expanding the leaf reached if it has been visited often enough,
+    // then random moves to the end of the game, and the result added
+    // to every node on the way
+    private void playout() {
+      replayRoot();
+      GameState.colorType turn = rootToMove;
+      int node = ROOT;
+      int depth = 0;
+      path[depth++] = ROOT;
+      stats.getAndAdd(ROOT, VISIT);
+      while (!board.gameIsOver() && depth < MAX_DEPTH) {
+        int first = firstChild.get(node);
+        if (first == UNEXPANDED
+            && (stats.get(node) >>> 32) >= EXPAND_VISITS) {
+          first = expand(node, this);
+        }
+        if (first < 0) {
+          break;
+        }
+        node = select(node, first);
+        stats.getAndAdd(node, VISIT);
+        path[depth++] = node;
+        play(columns[node], turn);
+        turn = opponent(turn);
+      }
+
+      for (int move = 0; move < PLAYOUT_LIMIT && !board.gameIsOver();
+          move++) {
+        int column;
+        do {
+          column = low + random.nextInt(high - low + 1);
+        } while (board.columnIsFull(column));
+        play(column, turn);
+        turn = opponent(turn);
+      }
+
+      // the root was moved into by the opponent of the side to move,
+      // and the sides alternate from there
+      GameState.colorType winner = board.getWinner();
+      GameState.colorType mover = opponent(rootToMove);
+      for (int i = 0; i < depth; i++) {
+        long points = (winner == GameState.colorType.UNKNOWN) ? 1
+            : (winner == mover) ? 2 : 0;
+        stats.getAndAdd(path[i], points);
+        mover = opponent(mover);
+      }
+    }
+
+    void replayRoot() {
+      board.reset();
+      low = -1;
+      high = -1;
+      for (int i = 0; i < rootColumns.length; i++) {
+        play(rootColumns[i], rootColors[i]);
+      }
+      if (low < 0) {
+        int centre = cols / 2;
+        low = Math.max(0, centre - (winningScore - 1));
+        high = Math.min(cols - 1, centre + (winningScore - 1));
+      }
+    }
+
+    private void play(int column, GameState.colorType color) {
+      board.dropInColumn(column, color);
+      int reach = winningScore - 1;
+      if (low < 0) {
+        low = Math.max(0, column - reach);
+        high = Math.min(cols - 1, column + reach);
+      }
+      else {
+        low = Math.min(low, Math.max(0, column - reach));
+        high = Math.max(high, Math.min(cols - 1, column + reach));
+      }
+    }
+
+    // function intends to fill moves with the columns worth playing
+    // from the worker's board and return how many there are
+    int candidates() {
+      int count = 0;
+      for (int c = low; c <= high; c++) {
+        if (!board.columnIsFull(c)) {
+          moves[count++] = c;
+        }
+      }
+      return count;
+    }
+  }
+}
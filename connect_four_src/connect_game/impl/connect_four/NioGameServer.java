@@ -0,0 +1,730 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Description: A server which hosts any number of games at once on a
+ * single port. Instead of blocking on one accept() and one opponent
+ * like ClientServerSocket, it uses non-blocking channels and
+ * selectors: one thread accepts connections and hands them to a
+ * Matchmaker, which pairs them into matches in arrival order, and a
+ * small fixed set of event loop threads relays the moves of every
+ * match. While a player waits for an opponent, the accepting thread
+ * keeps reading their channel, so a player who leaves the queue is
+ * noticed and never paired, and anything they sent meanwhile is kept
+ * for their match.
+ *
+ * Both players of a match are handled by the same event loop, so a
+ * match is only ever touched by one thread. The server keeps its own
+ * GameState for every match and checks each message before relaying
+ * it: only the player whose turn it is may send, and a column must
+ * exist and not be full. A player breaking these rules is
+ * disconnected, which also ends the match for the opponent.
+ *
+ * Clients are the usual ClientDemo boards, which speak the same
+ * GameProtocol frames as ClientServerSocket. Those boards start out
+ * waiting, so the server opens each match by sending the red player a
+ * turn swap, handing them the first move. Pings are answered with an
+ * acknowledgement; every other frame is checked and re-encoded with
+ * the server's own sequence number for the receiving player.
+ *
+ * Spectators connect to a second port and send a WATCH frame naming
+ * the match (matches are numbered from 1 as they start). They are
+ * handed to the event loop of that match, and every relayed message
+ * is encoded once more, into a single read-only frame shared by all of
+ * its spectators. Frames are only fanned out once the loop has
+ * finished with its players, and a spectator who cannot keep up just
+ * collects frames, which go out together in one gathering write once
+ * its socket drains, so spectators never delay the players.
+ *
+ * Given a GameArchive, the server also records every game: each
+ * relayed move or swap is added to the match's packed record in
+ * memory, and when the game is restarted or the match ends a copy of
+ * the record is handed to the archive's own thread, which appends it
+ * to the journal and indexes it, so the event loops never wait for
+ * the files.
+ *
+ * */
+public class NioGameServer {
+  // room for a single frame of the largest allowed length
+  private static final int INPUT_BYTES =
+      GameProtocol.LENGTH_FIELD + GameProtocol.MAX_BODY_LENGTH;
+
+  // a spectator this many frames behind is disconnected
+  private static final int MAX_SPECTATOR_BACKLOG = 4096;
+
+  // turns the first move over to yellow for a spectator catching up
+  // on a game restarted by yellow
+  private static final ByteBuffer YELLOW_FIRST = sharedFrame(
+      GameProtocol.SWAP_TURN, 0, 0);
+
+  private final int portNumber;
+  private final int spectatorPortNumber;
+  private final EventLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+  private final AtomicInteger nextMatchId = new AtomicInteger();
+  private final Matchmaker<SocketChannel> matchmaker;
+  private final GameArchive archive;
+
+  // the accepting thread's selector, which also watches the players
+  // waiting for an opponent
+  private Selector acceptSelector;
+
+  // every match still running, by number, for spectators to find
+  private final ConcurrentHashMap<Integer, Match> liveMatches =
+      new ConcurrentHashMap<Integer, Match>();
+
+  // spectators listen on the port after the players' port, and no
+  // games are recorded
+  public NioGameServer(int inPortNumber, int eventLoops) {
+    this(inPortNumber, eventLoops, inPortNumber + 1, null);
+  }
+
+  // the archive may be null, in which case no games are recorded
+  public NioGameServer(int inPortNumber, int eventLoops,
+      int inSpectatorPortNumber, GameArchive inArchive) {
+    portNumber = inPortNumber;
+    spectatorPortNumber = inSpectatorPortNumber;
+    archive = inArchive;
+    loops = new EventLoop[eventLoops];
+    matchmaker = new Matchmaker<SocketChannel>(
+        new Matchmaker.Listener<SocketChannel>() {
+          public boolean stillWaiting(SocketChannel player) {
+            return stillConnected(player);
+          }
+
+          // matches are spread over the event loops in turn
+          public void startMatch(SocketChannel red, SocketChannel yellow) {
+            int loop = Math.floorMod(nextLoop.getAndIncrement(),
+                loops.length);
+            loops[loop].addMatch(nextMatchId.incrementAndGet(), red,
+                stopWaiting(red), yellow, stopWaiting(yellow));
+          }
+        });
+  }
+
+  // intends to start the event loops and then accept connections on
+  // the calling thread for as long as the server runs
+  public void start() {
+    ServerSocketChannel serverChannel;
+    ServerSocketChannel spectatorChannel;
+    try {
+      for (int i = 0; i < loops.length; i++) {
+        loops[i] = new EventLoop(liveMatches, archive);
+        Thread thread = new Thread(loops[i], "game-loop-" + i);
+        thread.start();
+      }
+      acceptSelector = Selector.open();
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress(portNumber), 1024);
+      serverChannel.configureBlocking(false);
+      serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+      spectatorChannel = ServerSocketChannel.open();
+      spectatorChannel.bind(new InetSocketAddress(spectatorPortNumber), 1024);
+      spectatorChannel.configureBlocking(false);
+      spectatorChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+      System.out.println("Game server listening on port " + portNumber
+          + " (spectators on " + spectatorPortNumber + ") with "
+          + loops.length + " event loops");
+    }
+    catch (IOException ioe) {
+      System.out.println("Error: caught exception starting server.");
+      System.exit(7);
+      return;
+    }
+
+    while (true) {
+      try {
+        acceptSelector.select();
+        Iterator<SelectionKey> keys =
+            acceptSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.channel() == serverChannel) {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+              pair(channel);
+            }
+          }
+          else if (key.channel() == spectatorChannel) {
+            SocketChannel channel;
+            while ((channel = spectatorChannel.accept()) != null) {
+              channel.configureBlocking(false);
+              channel.register(acceptSelector, SelectionKey.OP_READ,
+                  new Spectator(channel));
+            }
+          }
+          else if (key.attachment() instanceof Spectator) {
+            readWatch(key);
+          }
+          else {
+            stillConnected((SocketChannel) key.channel());
+          }
+        }
+      }
+      catch (IOException ioe) {
+        System.out.println("Error: accepting a client connection.");
+      }
+    }
+  }
+
+  // intends to pair connections in the order they arrive: the first
+  // to connect plays red and the second plays yellow
+  private void pair(SocketChannel channel) throws IOException {
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    channel.register(acceptSelector, SelectionKey.OP_READ,
+        ByteBuffer.allocate(INPUT_BYTES));
+    matchmaker.join(channel);
+  }
+
+  // function intends to tell whether a waiting player is still
+  // connected. A peer closing its end only shows as the end of the
+  // stream, so the channel is read, keeping whatever the player sent
+  // for their match; a player found gone is closed. Only called from
+  // the accepting thread.
+  private boolean stillConnected(SocketChannel channel) {
+    SelectionKey key = channel.keyFor(acceptSelector);
+    if (key == null || !key.isValid()) {
+      return channel.isOpen();
+    }
+    ByteBuffer early = (ByteBuffer) key.attachment();
+    try {
+      if (channel.read(early) >= 0) {
+        if (!early.hasRemaining()) {
+          // a full buffer is sign of life enough; stop watching
+          key.interestOps(0);
+        }
+        return true;
+      }
+    }
+    catch (IOException ioe) {
+      // a reset connection is gone as well
+    }
+    key.cancel();
+    closeQuietly(channel);
+    return false;
+  }
+
+  // function intends to stop watching a player whose match is
+  // starting and return what they sent while waiting, ready to read
+  private ByteBuffer stopWaiting(SocketChannel channel) {
+    SelectionKey key = channel.keyFor(acceptSelector);
+    ByteBuffer early = (ByteBuffer) key.attachment();
+    key.cancel();
+    early.flip();
+    return early;
+  }
+
+  // method intends to read a new spectator's WATCH frame and hand the
+  // spectator to the event loop of the match it names
+  private void readWatch(SelectionKey key) {
+    Spectator spectator = (Spectator) key.attachment();
+    GameMessage message = new GameMessage();
+    try {
+      if (spectator.channel.read(spectator.input) < 0) {
+        throw new IOException("Connection closed by spectator");
+      }
+      spectator.input.flip();
+      boolean complete = GameProtocol.decode(spectator.input, message);
+      spectator.input.compact();
+      if (!complete) {
+        return;
+      }
+      Match match = liveMatches.get(message.value);
+      if (message.type != GameProtocol.WATCH || match == null) {
+        throw new IOException("No match to watch");
+      }
+      key.cancel();
+      match.loop.addSpectator(match, spectator);
+    }
+    catch (IOException | IllegalArgumentException error) {
+      key.cancel();
+      closeQuietly(spectator.channel);
+    }
+  }
+
+  // function intends to encode one frame into a buffer of its own
+  // which can only be read, so any number of connections may send it
+  private static ByteBuffer sharedFrame(byte type, int sequence, int value) {
+    ByteBuffer frame = ByteBuffer.allocate(GameProtocol.FRAME_LENGTH);
+    GameProtocol.encode(frame, type, sequence, value);
+    frame.flip();
+    return frame.asReadOnlyBuffer();
+  }
+
+  // the message type of a frame made by sharedFrame
+  private static byte typeOf(ByteBuffer frame) {
+    return frame.get(GameProtocol.LENGTH_FIELD + 1);
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    }
+    catch (IOException ioe) {
+      // nothing left to do with a channel that fails to close
+    }
+  }
+
+  // the state the server keeps for one connected player
+  private static class Player {
+    final SocketChannel channel;
+    final GameState.colorType color;
+    final ByteBuffer input = ByteBuffer.allocate(INPUT_BYTES);
+    ByteBuffer output = ByteBuffer.allocate(4 * GameProtocol.FRAME_LENGTH);
+    int outputSequence = 0;
+    Match match;
+    SelectionKey key;
+
+    Player(SocketChannel inChannel, GameState.colorType inColor) {
+      channel = inChannel;
+      color = inColor;
+    }
+  }
+
+  // the state the server keeps for one watching connection. Its
+  // backlog holds views of the shared frames, never copies of them.
+  private static class Spectator {
+    final SocketChannel channel;
+    final ByteBuffer input = ByteBuffer.allocate(INPUT_BYTES);
+    final ArrayDeque<ByteBuffer> backlog = new ArrayDeque<ByteBuffer>();
+    Match match;
+    SelectionKey key;
+
+    Spectator(SocketChannel inChannel) {
+      channel = inChannel;
+    }
+  }
+
+  // the state the server keeps for one game between two players
+  private static class Match {
+    final int id;
+    final EventLoop loop;
+    final Player red;
+    final Player yellow;
+    final GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+    GameState.colorType turn = GameState.colorType.RED;
+    boolean closed = false;
+
+    // the game being played, for the archive, or null if there is none
+    final GameJournal.Game record;
+
+    // the shared frames since the last restart, for new spectators,
+    // and those not yet fanned out to the current ones
+    final List<ByteBuffer> history = new ArrayList<ByteBuffer>();
+    final List<ByteBuffer> unsent = new ArrayList<ByteBuffer>();
+    final List<Spectator> spectators = new ArrayList<Spectator>();
+    int broadcastSequence = 0;
+
+    Match(int inId, EventLoop inLoop, Player inRed, Player inYellow,
+        boolean recorded) {
+      id = inId;
+      loop = inLoop;
+      red = inRed;
+      yellow = inYellow;
+      record = recorded ? new GameJournal.Game(GameSession.COLS) : null;
+    }
+
+    Player opponentOf(Player player) {
+      return player == red ? yellow : red;
+    }
+  }
+
+  // one event loop thread: owns a selector and every match assigned
+  // to it, together with the match's spectators
+  private static class EventLoop implements Runnable {
+    private final Selector selector;
+    private final ConcurrentHashMap<Integer, Match> liveMatches;
+    private final GameArchive archive;
+    private final ConcurrentLinkedQueue<Match> newMatches =
+        new ConcurrentLinkedQueue<Match>();
+    private final ConcurrentLinkedQueue<Spectator> newSpectators =
+        new ConcurrentLinkedQueue<Spectator>();
+
+    // every frame read by this loop is decoded into the same message
+    private final GameMessage message = new GameMessage();
+
+    // matches with frames waiting to be fanned out to spectators, and
+    // the array gathering writes are made from
+    private final List<Match> broadcasts = new ArrayList<Match>();
+    private ByteBuffer[] batch = new ByteBuffer[16];
+
+    EventLoop(ConcurrentHashMap<Integer, Match> inLiveMatches,
+        GameArchive inArchive) throws IOException {
+      selector = Selector.open();
+      liveMatches = inLiveMatches;
+      archive = inArchive;
+    }
+
+    // called from the accepting thread: the match is registered with
+    // the selector by the loop's own thread, and the bytes each player
+    // sent while waiting are handled once it has started
+    void addMatch(int id, SocketChannel red, ByteBuffer redEarly,
+        SocketChannel yellow, ByteBuffer yellowEarly) {
+      Match match = new Match(id, this,
+          new Player(red, GameState.colorType.RED),
+          new Player(yellow, GameState.colorType.YELLOW), archive != null);
+      match.red.match = match;
+      match.yellow.match = match;
+      match.red.input.put(redEarly);
+      match.yellow.input.put(yellowEarly);
+      newMatches.add(match);
+      selector.wakeup();
+    }
+
+    // called from the accepting thread, like addMatch
+    void addSpectator(Match match, Spectator spectator) {
+      spectator.match = match;
+      newSpectators.add(spectator);
+      selector.wakeup();
+    }
+
+    public void run() {
+      while (true) {
+        try {
+          selector.select();
+          registerNewMatches();
+          registerNewSpectators();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.attachment() instanceof Spectator) {
+              serveSpectator((Spectator) key.attachment());
+              continue;
+            }
+            Player player = (Player) key.attachment();
+            try {
+              if (key.isValid() && key.isReadable()) {
+                read(player);
+              }
+              if (key.isValid() && key.isWritable()) {
+                flush(player);
+              }
+            }
+            catch (IOException ioe) {
+              close(player.match);
+            }
+          }
+          // the players have been served; spectators come last
+          fanOut();
+        }
+        catch (IOException ioe) {
+          System.out.println("Error: event loop selector failed.");
+        }
+      }
+    }
+
+    private void registerNewMatches() {
+      Match match;
+      while ((match = newMatches.poll()) != null) {
+        try {
+          match.red.key = match.red.channel.register(selector,
+              SelectionKey.OP_READ, match.red);
+          match.yellow.key = match.yellow.channel.register(selector,
+              SelectionKey.OP_READ, match.yellow);
+          liveMatches.put(match.id, match);
+          System.out.println("Match " + match.id + " started");
+          // the red player's board is waiting like any client, so a
+          // turn swap hands it the first move
+          send(match.red, GameProtocol.SWAP_TURN, 0);
+          handleInput(match.red);
+          handleInput(match.yellow);
+        }
+        catch (IOException ioe) {
+          close(match);
+        }
+      }
+    }
+
+    // intends to start each new spectator off with the frames since
+    // the last restart of its match
+    private void registerNewSpectators() {
+      Spectator spectator;
+      while ((spectator = newSpectators.poll()) != null) {
+        Match match = spectator.match;
+        try {
+          if (match.closed) {
+            throw new IOException("Match already over");
+          }
+          spectator.key = spectator.channel.register(selector,
+              SelectionKey.OP_READ, spectator);
+          match.spectators.add(spectator);
+          for (ByteBuffer frame : match.history) {
+            spectator.backlog.add(frame.duplicate());
+          }
+          flush(spectator);
+        }
+        catch (IOException ioe) {
+          drop(spectator);
+        }
+      }
+    }
+
+    // intends to read whatever bytes are available and handle every
+    // complete frame among them
+    private void read(Player player) throws IOException {
+      if (player.channel.read(player.input) < 0) {
+        throw new IOException("Connection closed by client");
+      }
+      handleInput(player);
+    }
+
+    // intends to handle every complete frame in the player's input and
+    // keep the rest for the next read
+    private void handleInput(Player player) throws IOException {
+      ByteBuffer input = player.input;
+      input.flip();
+      try {
+        while (GameProtocol.decode(input, message)) {
+          handleMessage(player, message);
+        }
+      }
+      catch (IllegalArgumentException error) {
+        throw new IOException(error.getMessage());
+      }
+      input.compact();
+    }
+
+    // method intends to check a message against the server's copy of
+    // the game and relay it to the opponent if it is legal
+    private void handleMessage(Player player, GameMessage message)
+        throws IOException {
+      Match match = player.match;
+      if (message.type == GameProtocol.PING) {
+        send(player, GameProtocol.ACK, message.sequence);
+        return;
+      }
+      if (message.type == GameProtocol.ACK) {
+        return;
+      }
+      if (message.type == GameProtocol.WATCH) {
+        throw new IOException("Players cannot watch");
+      }
+      if (match.turn != player.color) {
+        throw new IOException("Message sent out of turn");
+      }
+      if (message.type == GameProtocol.RESTART) {
+        match.game.reset();
+      }
+      else if (message.type == GameProtocol.MOVE) {
+        int column = message.value;
+        if (column < 0 || column >= GameSession.COLS
+            || match.game.dropInColumn(column, player.color) < 0) {
+          throw new IOException("Illegal column: " + column);
+        }
+      }
+      Player opponent = match.opponentOf(player);
+      match.turn = opponent.color;
+      send(opponent, message.type, message.value);
+      broadcast(match, player, message);
+      record(match, message);
+    }
+
+    // intends to add a relayed message to the match's record. A
+    // restart ends the recorded game and starts the next one, in
+    // which the player who did not restart moves first.
+    private void record(Match match, GameMessage message) {
+      if (match.record == null) {
+        return;
+      }
+      if (message.type == GameProtocol.MOVE) {
+        match.record.addMove(message.value);
+      }
+      else if (message.type == GameProtocol.SWAP_TURN) {
+        match.record.addSwap();
+      }
+      else if (message.type == GameProtocol.RESTART) {
+        endRecord(match, true);
+        if (match.turn == GameState.colorType.YELLOW) {
+          match.record.addSwap();
+        }
+      }
+    }
+
+    // hands the recorded game to the archive, unless nothing was
+    // played in it, and empties the record
+    private void endRecord(Match match, boolean restarted) {
+      if (match.record.getEventCount() > 0) {
+        archive.recordLater(match.record, restarted);
+      }
+      match.record.clear();
+    }
+
+    // method intends to encode a relayed message once for every
+    // spectator, present or future, of the match
+    private void broadcast(Match match, Player sender, GameMessage message) {
+      ByteBuffer frame = sharedFrame(message.type,
+          ++match.broadcastSequence, message.value);
+      if (message.type == GameProtocol.RESTART) {
+        // a new spectator only needs the game since the restart, but
+        // must know whose turn that restart was
+        match.history.clear();
+        if (sender.color == GameState.colorType.YELLOW) {
+          match.history.add(YELLOW_FIRST);
+        }
+      }
+      int last = match.history.size() - 1;
+      if (message.type == GameProtocol.SWAP_TURN && last >= 0
+          && typeOf(match.history.get(last)) == GameProtocol.SWAP_TURN) {
+        // two swaps in a row leave the turn where it was, so a new
+        // spectator needs neither of them; without this, players
+        // swapping back and forth would grow the history forever
+        match.history.remove(last);
+      }
+      else {
+        match.history.add(frame);
+      }
+      if (!match.spectators.isEmpty()) {
+        if (match.unsent.isEmpty()) {
+          broadcasts.add(match);
+        }
+        match.unsent.add(frame);
+      }
+    }
+
+    // intends to hand every spectator the frames their match relayed
+    // during this pass of the loop
+    private void fanOut() {
+      for (Match match : broadcasts) {
+        for (int i = match.spectators.size() - 1; i >= 0; i--) {
+          Spectator spectator = match.spectators.get(i);
+          boolean idle = spectator.backlog.isEmpty();
+          for (ByteBuffer frame : match.unsent) {
+            spectator.backlog.add(frame.duplicate());
+          }
+          try {
+            // a spectator already behind waits for write readiness
+            if (idle) {
+              flush(spectator);
+            }
+            else if (spectator.backlog.size() > MAX_SPECTATOR_BACKLOG) {
+              throw new IOException("Spectator too slow");
+            }
+          }
+          catch (IOException ioe) {
+            drop(spectator);
+          }
+        }
+        match.unsent.clear();
+      }
+      broadcasts.clear();
+    }
+
+    // spectators are not expected to send anything after WATCH, so
+    // reading only notices them leaving
+    private void serveSpectator(Spectator spectator) {
+      SelectionKey key = spectator.key;
+      try {
+        if (key.isValid() && key.isReadable()) {
+          spectator.input.clear();
+          if (spectator.channel.read(spectator.input) < 0) {
+            throw new IOException("Connection closed by spectator");
+          }
+        }
+        if (key.isValid() && key.isWritable()) {
+          flush(spectator);
+        }
+      }
+      catch (IOException ioe) {
+        drop(spectator);
+      }
+    }
+
+    // writes as much of the backlog as the socket takes, all of it in
+    // one gathering write
+    private void flush(Spectator spectator) throws IOException {
+      ArrayDeque<ByteBuffer> backlog = spectator.backlog;
+      if (batch.length < backlog.size()) {
+        batch = new ByteBuffer[Integer.highestOneBit(backlog.size()) * 2];
+      }
+      int count = 0;
+      for (ByteBuffer frame : backlog) {
+        batch[count++] = frame;
+      }
+      spectator.channel.write(batch, 0, count);
+      while (!backlog.isEmpty() && !backlog.peekFirst().hasRemaining()) {
+        backlog.pollFirst();
+      }
+      Arrays.fill(batch, 0, count, null);
+      int interest = SelectionKey.OP_READ
+          | (backlog.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+      if (spectator.key.interestOps() != interest) {
+        spectator.key.interestOps(interest);
+      }
+    }
+
+    private void drop(Spectator spectator) {
+      spectator.match.spectators.remove(spectator);
+      spectator.backlog.clear();
+      closeQuietly(spectator.channel);
+    }
+
+    // queues the frame and writes as much of it as the socket takes
+    private void send(Player player, byte type, int value)
+        throws IOException {
+      if (player.output.remaining() < GameProtocol.FRAME_LENGTH) {
+        ByteBuffer larger = ByteBuffer.allocate(player.output.capacity() * 2);
+        player.output.flip();
+        larger.put(player.output);
+        player.output = larger;
+      }
+      GameProtocol.encode(player.output, type, ++player.outputSequence,
+          value);
+      flush(player);
+    }
+
+    // writes pending output, asking the selector for write readiness
+    // only while something is left over
+    private void flush(Player player) throws IOException {
+      player.output.flip();
+      player.channel.write(player.output);
+      boolean pending = player.output.hasRemaining();
+      player.output.compact();
+      int interest = SelectionKey.OP_READ
+          | (pending ? SelectionKey.OP_WRITE : 0);
+      if (player.key.interestOps() != interest) {
+        player.key.interestOps(interest);
+      }
+    }
+
+    // ends a match by closing both players' connections and those of
+    // its spectators
+    private void close(Match match) {
+      if (match.closed) {
+        return;
+      }
+      match.closed = true;
+      liveMatches.remove(match.id);
+      if (match.record != null) {
+        endRecord(match, false);
+      }
+      closeQuietly(match.red.channel);
+      closeQuietly(match.yellow.channel);
+      for (Spectator spectator : match.spectators) {
+        closeQuietly(spectator.channel);
+      }
+      match.spectators.clear();
+    }
+  }
+}
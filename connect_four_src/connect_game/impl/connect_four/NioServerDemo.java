@@ -0,0 +1,63 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Description: This class starts the multi-game server. Any number of
+ * ClientDemo boards may connect to the port; they are paired into
+ * games two at a time in the order they connect, and SpectatorDemo
+ * can watch any of those games on the next port. The port number
+ * (45000 by default), the number of event loop threads (one per core
+ * by default) and a journal file to record every game in (none by
+ * default; see JournalReplay and PositionStats) can be passed as
+ * arguments. The journal's position index is kept next to it.
+ * 
+ * */
+
+public class NioServerDemo {
+
+  public static void main(String [] args) {
+    // Instantiates port and event loop count
+    int portNumber = 45000;
+    int eventLoops = Runtime.getRuntime().availableProcessors();
+    if (args.length > 0) {
+      portNumber = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      eventLoops = Integer.parseInt(args[1]);
+    }
+    GameArchive archive = null;
+    if (args.length > 2) {
+      archive = openArchive(Paths.get(args[2]));
+    }
+    // runs the server until the process is stopped
+    NioGameServer server = new NioGameServer(portNumber, eventLoops,
+        portNumber + 1, archive);
+    server.start();
+  }
+
+  // intends to open the journal and its index, and close them
+  // cleanly when the process is stopped
+  private static GameArchive openArchive(Path file) {
+    try {
+      GameArchive archive = new GameArchive(file, GameSession.ROWS,
+          GameSession.COLS, GameSession.WINNING_SCORE);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          archive.close();
+        }
+        catch (IOException ioe) {
+          System.out.println("Error: closing the game journal.");
+        }
+      }));
+      return archive;
+    }
+    catch (IOException ioe) {
+      System.out.println("Error: can't open the game journal " + file);
+      System.exit(12);
+      return null;
+    }
+  } 
+}
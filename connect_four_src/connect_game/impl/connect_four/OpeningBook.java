@@ -0,0 +1,163 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Description: The exact scores of every position of the first few
+ * plies, read from a file written by OpeningBookGenerator. The file is
+ * memory-mapped when the book is opened and searched in place, so a
+ * lookup is a binary search over a few pages and nothing is loaded
+ * up front.
+ *
+ * Positions are keyed like the Solver sees them: the chips of the
+ * player to move together with the mask of all chips (plus the bottom
+ * row, so the key also records where the empty squares start), and a
+ * position and its left-right mirror image share the smaller of their
+ * two keys. Scores follow the Solver's convention, for the player to
+ * move. Positions where the game is already over are not stored.
+ *
+ * File layout, all values big-endian:
+ *
+ *   header  magic, rows, columns, winning score, last ply (ints)
+ *   counts  one int per ply from 0 to the last ply: the positions
+ *           stored for it
+ *   keys    the keys of each ply in turn, sorted within the ply (longs)
+ *   scores  one byte per key, in the same order
+ *
+ * */
+public class OpeningBook {
+  static final int MAGIC = 0x43344F42;
+  static final int HEADER_BYTES = 20;
+
+  // returned by get for a position the book does not hold
+  public static final int MISSING = Integer.MIN_VALUE;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int maxPly;
+  private final long bottomMask;
+  private final MappedByteBuffer buffer;
+
+  // index of the first key of each ply, and one past the last
+  private final int[] plyStart;
+  private final int keysOffset;
+  private final int scoresOffset;
+
+  // intends to map the book file; throws if it is not a book
+  public OpeningBook(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES
+          || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not an opening book: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an opening book: " + file);
+    }
+    rows = buffer.getInt(4);
+    cols = buffer.getInt(8);
+    winningScore = buffer.getInt(12);
+    maxPly = buffer.getInt(16);
+    bottomMask = bottomMask(rows, cols);
+
+    plyStart = new int[maxPly + 2];
+    for (int ply = 0; ply <= maxPly; ply++) {
+      plyStart[ply + 1] = plyStart[ply]
+          + buffer.getInt(HEADER_BYTES + ply * 4);
+    }
+    int count = plyStart[maxPly + 1];
+    keysOffset = HEADER_BYTES + (maxPly + 1) * 4;
+    scoresOffset = keysOffset + count * 8;
+    if ((long) scoresOffset + count != buffer.capacity()) {
+      throw new IOException("Opening book is cut short: " + file);
+    }
+  }
+
+  // function intends to return the exact score of the position for
+  // the player to move, or MISSING if the book does not go that deep
+  // or does not hold the position
+  public int get(long current, long mask, int moves) {
+    if (moves > maxPly) {
+      return MISSING;
+    }
+    long key = canonicalKey(current | (mask + bottomMask), rows, cols);
+    int low = plyStart[moves];
+    int high = plyStart[moves + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long stored = buffer.getLong(keysOffset + middle * 8);
+      if (stored < key) {
+        low = middle + 1;
+      }
+      else if (stored > key) {
+        high = middle - 1;
+      }
+      else {
+        return buffer.get(scoresOffset + middle);
+      }
+    }
+    return MISSING;
+  }
+
+  // the score of a GameState for the given player to move
+  public int get(GameState state, GameState.colorType toMove) {
+    return get(state.getBoard(toMove),
+        state.getBoard(GameState.colorType.RED)
+            | state.getBoard(GameState.colorType.YELLOW),
+        state.getMoveCount());
+  }
+
+  // true if the book was generated for the given board
+  public boolean fits(int inRows, int inCols, int inWinningScore) {
+    return rows == inRows && cols == inCols
+        && winningScore == inWinningScore;
+  }
+
+  public int getMaxPly() {
+    return maxPly;
+  }
+
+  public int getPositionCount() {
+    return plyStart[maxPly + 1];
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getCols() {
+    return cols;
+  }
+
+  public int getWinningScore() {
+    return winningScore;
+  }
+
+  static long bottomMask(int rows, int cols) {
+    long bottom = 0;
+    for (int c = 0; c < cols; c++) {
+      bottom |= 1L << (c * (rows + 1));
+    }
+    return bottom;
+  }
+
+  // the smaller of a key and its mirror image, the same rule as
+  // GameState.canonicalKey
+  static long canonicalKey(long key, int rows, int cols) {
+    int height = rows + 1;
+    long column = (1L << height) - 1;
+    long mirrored = 0;
+    for (int c = 0; c < cols; c++) {
+      long bits = (key >>> (c * height)) & column;
+      mirrored |= bits << ((cols - 1 - c) * height);
+    }
+    return Long.compareUnsigned(key, mirrored) <= 0 ? key : mirrored;
+  }
+}
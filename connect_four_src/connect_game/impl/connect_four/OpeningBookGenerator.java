@@ -0,0 +1,240 @@
+package connect_game.impl.connect_four;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Description: Writes an OpeningBook holding the exact score of every
+ * position up to the given ply. The positions of each ply are found by
+ * playing every move from those of the ply before, leaving out the
+ * games already won and keeping one of each mirror image pair. Only
+ * the positions of the last ply are searched, by Solvers sharing one
+ * transposition table on as many threads as given; every earlier
+ * score then follows exactly from the scores one ply further on. The
+ * last ply is by far the largest and its positions the quickest to
+ * solve, so a deeper book mostly costs more positions, not harder
+ * ones. Even so, a 6 x 7 book is built once, offline: positions of
+ * ply 8 take a few seconds each on one core, and there are some
+ * ninety thousand of them. Smaller boards take seconds.
+ *
+ * Arguments: output [last ply=8] [threads] [rows columns winning score]
+ *
+ * */
+public class OpeningBookGenerator {
+
+  // 2^24 slots take 128MB and are shared by every search thread
+  private static final int TABLE_SIZE = 1 << 24;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int height;
+  private final long bottomMask;
+  private final Solver helper;
+
+  public OpeningBookGenerator(int inRows, int inCols, int inWinningScore) {
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    height = rows + 1;
+    bottomMask = OpeningBook.bottomMask(rows, cols);
+    helper = new Solver(rows, cols, winningScore, new TranspositionTable(1));
+  }
+
+  public static void main(String [] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: OpeningBookGenerator output [last ply]"
+          + " [threads] [rows columns winning score]");
+      System.exit(2);
+    }
+    int maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int threads = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    OpeningBookGenerator generator = args.length > 5
+        ? new OpeningBookGenerator(Integer.parseInt(args[3]),
+            Integer.parseInt(args[4]), Integer.parseInt(args[5]))
+        : new OpeningBookGenerator(GameSession.ROWS, GameSession.COLS,
+            GameSession.WINNING_SCORE);
+    if (maxPly < 0 || maxPly >= generator.rows * generator.cols) {
+      System.out.println("Error: the last ply must be on the board.");
+      System.exit(2);
+    }
+    generator.generate(Paths.get(args[0]), maxPly, threads);
+  }
+
+  // method intends to find, score and write out every position up to
+  // the last ply
+  public void generate(Path output, int maxPly, int threads)
+      throws IOException {
+    long start = System.nanoTime();
+    long[][] keys = new long[maxPly + 1][];
+    keys[0] = new long[] {OpeningBook.canonicalKey(bottomMask, rows, cols)};
+    for (int ply = 1; ply <= maxPly; ply++) {
+      keys[ply] = children(keys[ply - 1]);
+      System.out.println("ply " + ply + ": " + keys[ply].length
+          + " positions");
+    }
+
+    byte[][] scores = new byte[maxPly + 1][];
+    scores[maxPly] = solve(keys[maxPly], maxPly, threads);
+    for (int ply = maxPly - 1; ply >= 0; ply--) {
+      scores[ply] = backUp(keys[ply], ply, keys[ply + 1], scores[ply + 1]);
+    }
+
+    int total = 0;
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(output)))) {
+      out.writeInt(OpeningBook.MAGIC);
+      out.writeInt(rows);
+      out.writeInt(cols);
+      out.writeInt(winningScore);
+      out.writeInt(maxPly);
+      for (long[] plyKeys : keys) {
+        out.writeInt(plyKeys.length);
+        total += plyKeys.length;
+      }
+      for (long[] plyKeys : keys) {
+        for (long key : plyKeys) {
+          out.writeLong(key);
+        }
+      }
+      for (byte[] plyScores : scores) {
+        out.write(plyScores);
+      }
+    }
+    System.out.println(total + " positions written to " + output + " in "
+        + (System.nanoTime() - start) / 1000000 + " ms (score of the empty"
+        + " board: " + scores[0][0] + ")");
+  }
+
+  // returns the sorted canonical keys of every position one move on
+  // from the given ones, except those where that move won the game
+  private long[] children(long[] parents) {
+    long[] found = new long[parents.length * cols];
+    int count = 0;
+    for (long parent : parents) {
+      long mask = maskOf(parent);
+      long current = parent & mask;
+      long winning = helper.winningPositions(current, mask);
+      long possible = helper.possibleMoves(mask);
+      while (possible != 0) {
+        long move = possible & -possible;
+        possible ^= move;
+        if ((move & winning) == 0) {
+          found[count++] = childKey(current, mask, move);
+        }
+      }
+    }
+    Arrays.sort(found, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || found[unique - 1] != found[i]) {
+        found[unique++] = found[i];
+      }
+    }
+    return Arrays.copyOf(found, unique);
+  }
+
+  // function intends to solve every position of the last ply, split
+  // into one slice per thread
+  private byte[] solve(long[] positions, int ply, int threads)
+      throws IOException {
+    byte[] scores = new byte[positions.length];
+    TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+    AtomicInteger solved = new AtomicInteger();
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      slices.add(() -> {
+        Solver solver = new Solver(rows, cols, winningScore, table);
+        for (int i = first; i < positions.length; i += threads) {
+          long mask = maskOf(positions[i]);
+          scores[i] = (byte) solver.solve(positions[i] & mask, mask, ply,
+              Long.MAX_VALUE);
+          int done = solved.incrementAndGet();
+          if (done % 10000 == 0) {
+            System.out.println(done + " of " + positions.length
+                + " positions solved in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+          }
+        }
+        return null;
+      });
+    }
+    try {
+      for (Future<Void> slice : pool.invokeAll(slices)) {
+        slice.get();
+      }
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while solving");
+    }
+    catch (ExecutionException error) {
+      throw new IllegalStateException("Solving failed", error.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+    return scores;
+  }
+
+  // method intends to score each position from the scores one ply
+  // further on: an immediate win is scored directly, and otherwise the
+  // player to move picks the child that is worst for the opponent
+  private byte[] backUp(long[] positions, int ply, long[] childKeys,
+      byte[] childScores) {
+    byte[] scores = new byte[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      long mask = maskOf(positions[i]);
+      long current = positions[i] & mask;
+      long possible = helper.possibleMoves(mask);
+      if ((helper.winningPositions(current, mask) & possible) != 0) {
+        scores[i] = (byte) helper.immediateWinScore(ply);
+        continue;
+      }
+      int best = Integer.MIN_VALUE;
+      while (possible != 0) {
+        long move = possible & -possible;
+        possible ^= move;
+        int child = Arrays.binarySearch(childKeys,
+            childKey(current, mask, move));
+        best = Math.max(best, -childScores[child]);
+      }
+      scores[i] = (byte) best;
+    }
+    return scores;
+  }
+
+  private long childKey(long current, long mask, long move) {
+    long childMask = mask | move;
+    return OpeningBook.canonicalKey(
+        (current ^ mask) | (childMask + bottomMask), rows, cols);
+  }
+
+  // recovers the mask of all chips from a key: in each column, the
+  // highest bit of the key sits just above the column's chips
+  private long maskOf(long key) {
+    long column = (1L << height) - 1;
+    long mask = 0;
+    for (int c = 0; c < cols; c++) {
+      long top = Long.highestOneBit((key >>> (c * height)) & column);
+      mask |= (top - 1) << (c * height);
+    }
+    return mask;
+  }
+}
@@ -0,0 +1,206 @@
+package connect_game.impl.connect_four;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Description: This class spreads the computer player's column choice
+ * over several cores. Every playable root column is solved as its own
+ * task on a ForkJoinPool, and each pool thread runs its own Solver.
+ * All of the solvers share one lock-free TranspositionTable, so a
+ * position proven by one thread is immediately reused by the others.
+ * With a single thread this plays exactly like Solver.chooseColumn.
+ *
+ * */
+public class ParallelSolver {
+
+  // 2^23 slots take 64MB and are shared by every search thread
+  private static final int DEFAULT_TABLE_SIZE = 1 << 23;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int threads;
+  private final TranspositionTable table;
+  private final ForkJoinPool pool;
+
+  // intends to give each pool thread its own solver (the scratch
+  // arrays used for move ordering cannot be shared)
+  private final ThreadLocal<Solver> workers;
+
+  // used on the calling thread for move generation and the fallback
+  // guess, never for searching
+  private final Solver helper;
+
+  // handed to each worker solver before it searches
+  private volatile OpeningBook openingBook;
+
+  private final AtomicLong nodeCount = new AtomicLong();
+  private int lastScore;
+  private boolean lastSolved;
+
+  public ParallelSolver(int inRows, int inCols, int inWinningScore,
+      int inThreads) {
+    if (inThreads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed");
+    }
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    threads = inThreads;
+    table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+    helper = new Solver(rows, cols, winningScore, table);
+    workers = ThreadLocal.withInitial(
+        () -> new Solver(rows, cols, winningScore, table));
+    pool = new ForkJoinPool(threads);
+  }
+
+  // function intends to pick the column for the player to move within
+  // the time budget, following the same rules as Solver.chooseColumn:
+  // exact scores while time allows, otherwise a proven win or draw if
+  // one was found, otherwise the move ordering guess among the columns
+  // not proven to lose. Returns -1 if no column can be played.
+  public int chooseColumn(GameState state, GameState.colorType toMove,
+      long timeBudgetMillis) {
+    long current = state.getBoard(toMove);
+    long mask = state.getBoard(GameState.colorType.RED)
+        | state.getBoard(GameState.colorType.YELLOW);
+    int moves = state.getMoveCount();
+    long deadline = System.nanoTime() + timeBudgetMillis * 1000000L;
+    nodeCount.set(0);
+    lastSolved = false;
+
+    long possible = helper.possibleMoves(mask);
+    if (possible == 0) {
+      return -1;
+    }
+    long winning = helper.winningPositions(current, mask) & possible;
+    if (winning != 0) {
+      lastScore = helper.immediateWinScore(moves);
+      lastSolved = true;
+      return helper.columnOf(winning);
+    }
+
+    // intends to create one task per playable column, in centre-first
+    // order so the most promising columns start first
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    List<Integer> columns = new ArrayList<Integer>();
+    for (int column : helper.getColumnOrder()) {
+      long move = helper.columnMove(mask, column);
+      if (move != 0) {
+        tasks.add(() -> solveChild(current ^ mask, mask | move,
+            moves + 1, deadline));
+        columns.add(column);
+      }
+    }
+
+    int bestColumn = -1;
+    int bestScore = Integer.MIN_VALUE;
+    long provenLosses = 0;
+    boolean timedOut = false;
+    List<Future<Integer>> results = pool.invokeAll(tasks);
+    for (int i = 0; i < results.size(); i++) {
+      Integer childScore = getResult(results.get(i));
+      if (childScore == null) {
+        timedOut = true;
+        continue;
+      }
+      if (-childScore < 0) {
+        provenLosses |= helper.columnMove(mask, columns.get(i));
+      }
+      if (-childScore > bestScore) {
+        bestScore = -childScore;
+        bestColumn = columns.get(i);
+      }
+    }
+
+    if (!timedOut) {
+      lastScore = bestScore;
+      lastSolved = true;
+    }
+    else if (bestScore >= 0) {
+      // keep a proven win or draw
+      lastScore = bestScore;
+    }
+    else {
+      // never guess a column already proven to lose
+      int guess = helper.guessColumn(current, mask, moves, provenLosses);
+      if (guess >= 0) {
+        bestColumn = guess;
+      }
+      lastScore = 0;
+    }
+    return bestColumn;
+  }
+
+  // solves one root child on the current pool thread. Returns null if
+  // the deadline passed before the score was known.
+  private Integer solveChild(long current, long mask, int moves,
+      long deadline) {
+    Solver solver = workers.get();
+    solver.setOpeningBook(openingBook);
+    long nodesBefore = solver.getNodeCount();
+    try {
+      return solver.solve(current, mask, moves, deadline);
+    }
+    catch (Solver.SearchTimeout timeout) {
+      return null;
+    }
+    finally {
+      nodeCount.addAndGet(solver.getNodeCount() - nodesBefore);
+    }
+  }
+
+  private Integer getResult(Future<Integer> result) {
+    try {
+      return result.get();
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (ExecutionException error) {
+      throw new IllegalStateException("Search task failed", error.getCause());
+    }
+  }
+
+  // intends to look up the positions the book holds instead of
+  // searching them, on every thread; null turns the book off
+  public void setOpeningBook(OpeningBook book) {
+    helper.setOpeningBook(book);
+    openingBook = book;
+  }
+
+  // the table shared by every search thread, which other solvers may
+  // share too
+  TranspositionTable getTable() {
+    return table;
+  }
+
+  // intends to stop the pool threads once the solver is not needed
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  // nodes searched by all threads during the last chooseColumn
+  public long getNodeCount() {
+    return nodeCount.get();
+  }
+
+  public int getLastScore() {
+    return lastScore;
+  }
+
+  public boolean lastMoveWasSolved() {
+    return lastSolved;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+}
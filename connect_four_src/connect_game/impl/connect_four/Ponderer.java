@@ -0,0 +1,159 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Description: This class lets the computer think on the player's
+ * time. Once the computer has moved, a background thread searches the
+ * computer's answer to each of the player's replies in turn, centre
+ * columns (the likeliest replies) first, with the same time budget as
+ * a real move. When the player's move arrives the speculative search
+ * is stopped within a few thousand positions, and if that reply was
+ * already searched its answer is played at once.
+ *
+ * Pondering is capped in CPU: it runs on one thread at the lowest
+ * priority, whatever the number of search threads, spends at most one
+ * time budget on each reply and stops once every reply is searched, so
+ * a turn costs at most COLS budgets of one core. The search it uses is
+ * its own and never runs at the same time as the real one.
+ *
+ * */
+public class Ponderer {
+
+  // intends to choose a column within a time budget, and to return
+  // early (with any column) once it is stopped
+  public interface Search {
+    int chooseColumn(GameState state, GameState.colorType toMove,
+        long timeBudgetMillis);
+
+    void setStopped(boolean stopped);
+  }
+
+  private final Search search;
+  private final long timeBudgetMillis;
+  private final int[] columnOrder;
+
+  private final ExecutorService thread = Executors.newSingleThreadExecutor(
+      runnable -> {
+        Thread ponderThread = new Thread(runnable, "ponderer");
+        ponderThread.setDaemon(true);
+        ponderThread.setPriority(Thread.MIN_PRIORITY);
+        return ponderThread;
+      });
+  private Future<?> pondering;
+  private volatile boolean cancelled;
+
+  // the positions after each reply and the answers found, published
+  // to the caller by waiting for the pondering task
+  private final long[] positionKeys;
+  private final int[] answers;
+  private int answered;
+
+  public Ponderer(Search inSearch, int cols, long inTimeBudgetMillis) {
+    search = inSearch;
+    timeBudgetMillis = inTimeBudgetMillis;
+    columnOrder = new int[cols];
+    for (int i = 0; i < cols; i++) {
+      columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+    }
+    positionKeys = new long[cols];
+    answers = new int[cols];
+  }
+
+  // method intends to start searching the answers to every reply of
+  // the player in the given position, on a copy of it
+  public void start(GameState state, GameState.colorType player,
+      GameState.colorType computer) {
+    waitForTask();
+    answered = 0;
+    cancelled = false;
+    search.setStopped(false);
+    GameState position = copyOf(state);
+    pondering = thread.submit(() -> ponder(position, player, computer));
+  }
+
+  private void ponder(GameState position, GameState.colorType player,
+      GameState.colorType computer) {
+    for (int column : columnOrder) {
+      if (cancelled) {
+        return;
+      }
+      if (position.columnIsFull(column)) {
+        continue;
+      }
+      GameState reply = copyOf(position);
+      reply.dropInColumn(column, player);
+      if (reply.gameIsOver()) {
+        continue;
+      }
+      int answer = search.chooseColumn(reply, computer, timeBudgetMillis);
+      // a stopped search returns early with an unfinished answer
+      if (cancelled) {
+        return;
+      }
+      positionKeys[answered] = reply.positionKey();
+      answers[answered] = answer;
+      answered++;
+    }
+  }
+
+  // intends to stop pondering without waiting for it, e.g. from the
+  // thread which delivers the player's move
+  public void stop() {
+    cancelled = true;
+    search.setStopped(true);
+  }
+
+  // function intends to stop pondering, wait for the thread to be idle
+  // and return the answer found for the given position, or -1 if it
+  // was not searched
+  public int answer(GameState state) {
+    stop();
+    waitForTask();
+    long key = state.positionKey();
+    for (int i = 0; i < answered; i++) {
+      if (positionKeys[i] == key) {
+        return answers[i];
+      }
+    }
+    return -1;
+  }
+
+  private void waitForTask() {
+    if (pondering == null) {
+      return;
+    }
+    try {
+      pondering.get();
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException error) {
+      throw new IllegalStateException("Pondering failed", error.getCause());
+    }
+    pondering = null;
+  }
+
+  // intends to stop the pondering thread once it is not needed
+  public void shutdown() {
+    stop();
+    thread.shutdown();
+  }
+
+  // a copy of the position, chip by chip; the order does not matter
+  // since every drop names its color
+  private static GameState copyOf(GameState state) {
+    GameState copy = new GameState(state.getRows(), state.getCols(),
+        state.getWinningScore());
+    for (int c = 0; c < state.getCols(); c++) {
+      for (int h = 0; h < state.getColumnHeight(c); h++) {
+        copy.dropInColumn(c, state.getColor(state.getRows() - 1 - h, c));
+      }
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,292 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/*
+ * Description: An on-disk index of every position reached in the
+ * games of a GameJournal. For any position it answers, in a handful of
+ * memory reads, how often games through it were won by red, won by
+ * yellow, drawn or left unfinished, and which games they were (as the
+ * offsets of their records in the journal, newest first). A position
+ * and its left-right mirror image are the same entry, since they
+ * play out the same way.
+ *
+ * The index is two memory-mapped files next to each other:
+ *
+ *   <name>.slots  a 64 byte header, then an open-addressing hash table
+ *                 of 32 byte slots keyed by GameState.canonicalKey():
+ *                 key, newest posting, red wins, yellow wins, draws
+ *                 and unfinished games
+ *   <name>.games  16 byte postings, each a game's journal offset and
+ *                 the posting of the previous game through the same
+ *                 position
+ *
+ * Games are added one at a time as they finish, and each adds a
+ * posting to every position it went through, until it was won or
+ * drawn. The table doubles (into a new file, renamed over the old one)
+ * whenever it becomes more than 70% full.
+ *
+ * */
+public class PositionIndex {
+  private static final int MAGIC = 0x43345049;
+  private static final int HEADER_BYTES = 64;
+  private static final int SLOT_BYTES = 32;
+  private static final int POSTING_BYTES = 16;
+  private static final long INITIAL_SLOTS = 1 << 16;
+
+  // header fields
+  private static final int ROWS = 4;
+  private static final int COLS = 8;
+  private static final int WINNING_SCORE = 12;
+  private static final int CAPACITY = 16;
+  private static final int POSITIONS = 24;
+  private static final int POSTINGS = 32;
+  private static final int GAMES = 40;
+
+  // slot fields
+  private static final int KEY = 0;
+  private static final int NEWEST = 8;
+  private static final int RED_WINS = 16;
+  private static final int YELLOW_WINS = 20;
+  private static final int DRAWS = 24;
+  private static final int UNFINISHED = 28;
+
+  private final Path slotsFile;
+  private final Path gamesFile;
+  private final boolean readOnly;
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private MappedRegions slots;
+  private final MappedRegions postings;
+  private long capacity;
+  private long positions;
+  private long postingCount;
+  private long gameCount;
+
+  // scratch state for adding games
+  private final GameState replay;
+  private long[] keys = new long[64];
+
+  // intends to open the index with the given name, creating an empty
+  // one for the board size if it is writable and does not exist yet
+  public PositionIndex(Path name, int inRows, int inCols,
+      int inWinningScore, boolean inReadOnly) throws IOException {
+    slotsFile = Paths.get(name + ".slots");
+    gamesFile = Paths.get(name + ".games");
+    readOnly = inReadOnly;
+    boolean created = !Files.exists(slotsFile);
+    slots = new MappedRegions(slotsFile, readOnly);
+    postings = new MappedRegions(gamesFile, readOnly);
+    if (created) {
+      rows = inRows;
+      cols = inCols;
+      winningScore = inWinningScore;
+      capacity = INITIAL_SLOTS;
+      slots.ensure(HEADER_BYTES + capacity * SLOT_BYTES);
+      slots.putInt(0, MAGIC);
+      slots.putInt(ROWS, rows);
+      slots.putInt(COLS, cols);
+      slots.putInt(WINNING_SCORE, winningScore);
+      writeHeader();
+    }
+    else {
+      if (slots.getInt(0) != MAGIC) {
+        throw new IOException("Not a position index: " + slotsFile);
+      }
+      rows = slots.getInt(ROWS);
+      cols = slots.getInt(COLS);
+      winningScore = slots.getInt(WINNING_SCORE);
+      if (rows != inRows || cols != inCols
+          || winningScore != inWinningScore) {
+        throw new IOException("Index was built for another board size");
+      }
+      capacity = slots.getLong(CAPACITY);
+      positions = slots.getLong(POSITIONS);
+      postingCount = slots.getLong(POSTINGS);
+      gameCount = slots.getLong(GAMES);
+    }
+    replay = new GameState(rows, cols, winningScore);
+  }
+
+  // method intends to index a recorded game, stored in the journal at
+  // the given offset. Every position up to the end of the game is
+  // added, counted with the game's result.
+  public synchronized void addGame(long journalOffset, GameJournal.Game game)
+      throws IOException {
+    if (readOnly) {
+      throw new IOException("The index is read-only");
+    }
+    int count = 0;
+    replay.reset();
+    keys[count++] = replay.canonicalKey();
+    GameState.colorType turn = GameState.colorType.RED;
+    for (int i = 0; i < game.getEventCount() && !replay.gameIsOver(); i++) {
+      int event = game.getEvent(i);
+      if (event == game.getRestart() || event == game.getClose()) {
+        break;
+      }
+      if (event != game.getSwap()) {
+        if (replay.dropInColumn(event, turn) < 0) {
+          break;
+        }
+        if (count == keys.length) {
+          keys = Arrays.copyOf(keys, count * 2);
+        }
+        keys[count++] = replay.canonicalKey();
+      }
+      turn = (turn == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+    int result = replay.getWinner() == GameState.colorType.RED ? RED_WINS
+        : replay.getWinner() == GameState.colorType.YELLOW ? YELLOW_WINS
+        : replay.isFull() ? DRAWS : UNFINISHED;
+
+    while ((positions + count) * 10 > capacity * 7) {
+      grow();
+    }
+    postings.ensure((postingCount + count) * POSTING_BYTES);
+    for (int i = 0; i < count; i++) {
+      long slot = find(slots, capacity, keys[i]);
+      if (slots.getLong(slot + KEY) == 0) {
+        slots.putLong(slot + KEY, keys[i]);
+        positions++;
+      }
+      long posting = postingCount++ * POSTING_BYTES;
+      postings.putLong(posting, journalOffset);
+      postings.putLong(posting + 8, slots.getLong(slot + NEWEST));
+      slots.putLong(slot + NEWEST, posting + 1);
+      slots.putInt(slot + result, slots.getInt(slot + result) + 1);
+    }
+    gameCount++;
+    writeHeader();
+  }
+
+  // returns the statistics of the position (or its mirror image), all
+  // zero if no recorded game reached it
+  public synchronized Stats lookup(GameState state) {
+    long slot = find(slots, capacity, state.canonicalKey());
+    if (slots.getLong(slot + KEY) == 0) {
+      return new Stats(0, 0, 0, 0);
+    }
+    return new Stats(slots.getInt(slot + RED_WINS),
+        slots.getInt(slot + YELLOW_WINS), slots.getInt(slot + DRAWS),
+        slots.getInt(slot + UNFINISHED));
+  }
+
+  // function intends to fill the array with the journal offsets of
+  // the newest games through the position. Returns how many were
+  // found, at most the length of the array.
+  public synchronized int findGames(GameState state, long[] games) {
+    long slot = find(slots, capacity, state.canonicalKey());
+    if (slots.getLong(slot + KEY) == 0) {
+      return 0;
+    }
+    int found = 0;
+    long posting = slots.getLong(slot + NEWEST);
+    while (posting != 0 && found < games.length) {
+      games[found++] = postings.getLong(posting - 1);
+      posting = postings.getLong(posting - 1 + 8);
+    }
+    return found;
+  }
+
+  public synchronized long getPositionCount() {
+    return positions;
+  }
+
+  public synchronized long getGameCount() {
+    return gameCount;
+  }
+
+  // intends to write out both files and close them
+  public synchronized void close() throws IOException {
+    slots.close(-1);
+    postings.close(readOnly ? -1 : postingCount * POSTING_BYTES);
+  }
+
+  // returns the offset of the key's slot, or of the empty slot where
+  // it belongs. Linear probing from a mixed hash of the key.
+  private static long find(MappedRegions table, long tableCapacity,
+      long key) {
+    long index = mix(key) & (tableCapacity - 1);
+    while (true) {
+      long slot = HEADER_BYTES + index * SLOT_BYTES;
+      long stored = table.getLong(slot + KEY);
+      if (stored == key || stored == 0) {
+        return slot;
+      }
+      index = (index + 1) & (tableCapacity - 1);
+    }
+  }
+
+  // spreads the key's bits, which are mostly alike in the low columns
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  // method intends to double the table: the slots are copied into a
+  // new file, which then replaces the old one
+  private void grow() throws IOException {
+    Path grownFile = Paths.get(slotsFile + ".grow");
+    Files.deleteIfExists(grownFile);
+    long grownCapacity = capacity * 2;
+    MappedRegions grown = new MappedRegions(grownFile, false);
+    grown.ensure(HEADER_BYTES + grownCapacity * SLOT_BYTES);
+    for (int offset = 0; offset < CAPACITY; offset += 4) {
+      grown.putInt(offset, slots.getInt(offset));
+    }
+    for (long i = 0; i < capacity; i++) {
+      long slot = HEADER_BYTES + i * SLOT_BYTES;
+      long key = slots.getLong(slot + KEY);
+      if (key != 0) {
+        long target = find(grown, grownCapacity, key);
+        for (int field = 0; field < SLOT_BYTES; field += 8) {
+          grown.putLong(target + field, slots.getLong(slot + field));
+        }
+      }
+    }
+    slots.close(-1);
+    slots = grown;
+    capacity = grownCapacity;
+    writeHeader();
+    grown.close(-1);
+    Files.move(grownFile, slotsFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    slots = new MappedRegions(slotsFile, false);
+  }
+
+  private void writeHeader() {
+    slots.putLong(CAPACITY, capacity);
+    slots.putLong(POSITIONS, positions);
+    slots.putLong(POSTINGS, postingCount);
+    slots.putLong(GAMES, gameCount);
+  }
+
+  // how the games through one position ended
+  public static class Stats {
+    public final int redWins;
+    public final int yellowWins;
+    public final int draws;
+    public final int unfinished;
+
+    Stats(int inRedWins, int inYellowWins, int inDraws, int inUnfinished) {
+      redWins = inRedWins;
+      yellowWins = inYellowWins;
+      draws = inDraws;
+      unfinished = inUnfinished;
+    }
+
+    public int getGames() {
+      return redWins + yellowWins + draws + unfinished;
+    }
+  }
+}
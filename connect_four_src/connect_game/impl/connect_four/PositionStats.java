@@ -0,0 +1,97 @@
+package connect_game.impl.connect_four;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Description: Looks up a position in the index of a game journal and
+ * prints how the recorded games through it (or through its mirror
+ * image) ended, followed by the newest of those games. The position
+ * is given as the columns played from the empty board, 1-based and
+ * red first, e.g. "4453". Given "build" instead, it indexes whatever
+ * the journal holds that is not indexed yet, reading the journal
+ * without writing to it; a server recording into the journal indexes
+ * its games itself, so build refuses to run while one is.
+ *
+ * Arguments: journal (build | moves [games to list])
+ *
+ * */
+public class PositionStats {
+
+  public static void main(String [] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: PositionStats journal (build | moves"
+          + " [games to list])");
+      System.exit(2);
+    }
+    Path journalFile = Paths.get(args[0]);
+    GameJournal.Reader reader = new GameJournal.Reader(journalFile);
+    if (args[1].equals("build")) {
+      reader.close();
+      long start = System.nanoTime();
+      PositionIndex index;
+      try {
+        index = GameArchive.buildIndex(journalFile);
+      }
+      catch (IOException ioe) {
+        System.out.println("Error: can't index the game journal "
+            + journalFile + " (" + ioe.getMessage() + ")");
+        System.exit(14);
+        return;
+      }
+      System.out.println(index.getGameCount() + " games, "
+          + index.getPositionCount() + " positions indexed in "
+          + (System.nanoTime() - start) / 1000000 + " ms");
+      index.close();
+      return;
+    }
+
+    GameState state = new GameState(reader.getRows(), reader.getCols(),
+        reader.getWinningScore());
+    GameState.colorType turn = GameState.colorType.RED;
+    for (int i = 0; i < args[1].length(); i++) {
+      int column = args[1].charAt(i) - '1';
+      if (column < 0 || column >= state.getCols()) {
+        throw new IllegalArgumentException("Move " + (i + 1) + " of "
+            + args[1] + " is not a column from 1 to " + state.getCols());
+      }
+      if (state.dropInColumn(column, turn) < 0) {
+        throw new IllegalArgumentException("Move " + (i + 1) + " of "
+            + args[1] + " is into column " + (column + 1)
+            + ", which is full");
+      }
+      turn = (turn == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+    long[] games = new long[args.length > 2 ? Integer.parseInt(args[2]) : 10];
+
+    PositionIndex index = new PositionIndex(Paths.get(journalFile + ".index"),
+        state.getRows(), state.getCols(), state.getWinningScore(), true);
+    long start = System.nanoTime();
+    PositionIndex.Stats stats = index.lookup(state);
+    int found = index.findGames(state, games);
+    long lookupMicros = (System.nanoTime() - start) / 1000;
+
+    System.out.print(state);
+    System.out.println(stats.getGames() + " games: red won " + stats.redWins
+        + ", yellow won " + stats.yellowWins + ", drawn " + stats.draws
+        + ", unfinished " + stats.unfinished + " (looked up in "
+        + lookupMicros + " us)");
+
+    GameJournal.Game game = new GameJournal.Game(state.getCols());
+    GameState replayed = new GameState(state.getRows(), state.getCols(),
+        state.getWinningScore());
+    for (int i = 0; i < found; i++) {
+      reader.seek(games[i]);
+      reader.next(game);
+      int moves = JournalReplay.replay(game, replayed, false);
+      System.out.println("game at " + games[i] + ": " + moves + " moves, "
+          + (replayed.getWinner() != GameState.colorType.UNKNOWN
+              ? replayed.getWinner() + " won"
+              : replayed.isFull() ? "drawn" : "unfinished"));
+    }
+    index.close();
+    reader.close();
+  }
+}
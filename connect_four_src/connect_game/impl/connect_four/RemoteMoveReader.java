@@ -0,0 +1,92 @@
+package connect_game.impl.connect_four;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Description: A single long-lived thread which reads the other side's
+ * messages for as long as the game runs, instead of one worker per
+ * turn. Each message is queued and handed to the handler on the
+ * executor given (the event dispatch thread for BoardFrame), so only
+ * that thread ever applies moves or touches the view.
+ *
+ * Hand-offs are coalesced: while a drain is already scheduled, newly
+ * read messages just join the queue, and the next drain hands over
+ * everything that has arrived as one batch.
+ *
+ * Messages are reused, as ClientServerSocket reuses its frames: once
+ * the handler has returned, its batch goes back to the reader to be
+ * received into again, so after the first few reads no message is
+ * allocated. Not before then, since the handler may show a dialog,
+ * and another drain can run while that dialog is open.
+ *
+ * */
+public class RemoteMoveReader implements Runnable {
+
+  // intends to receive every batch of messages on the handler thread.
+  // The messages are reused once the call returns, so they must not
+  // be kept.
+  public interface Handler {
+    void handleRemoteMoves(List<GameMessage> batch);
+  }
+
+  private final GameConnection connection;
+  private final Executor handlerThread;
+  private final Handler handler;
+  private final ConcurrentLinkedQueue<GameMessage> pending =
+      new ConcurrentLinkedQueue<GameMessage>();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+  // messages the handler is done with, to be received into again
+  private final ConcurrentLinkedQueue<GameMessage> free =
+      new ConcurrentLinkedQueue<GameMessage>();
+
+  public RemoteMoveReader(GameConnection inConnection,
+      Executor inHandlerThread, Handler inHandler) {
+    connection = inConnection;
+    handlerThread = inHandlerThread;
+    handler = inHandler;
+  }
+
+  // starts the reading thread; it never stops on its own, but does
+  // not keep the program alive either
+  public void start() {
+    Thread thread = new Thread(this, "remote-move-reader");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void run() {
+    while (true) {
+      GameMessage message = free.poll();
+      if (message == null) {
+        message = new GameMessage();
+      }
+      connection.receiveMessage(message);
+      message.receivedNanos = System.nanoTime();
+      pending.add(message);
+      if (drainScheduled.compareAndSet(false, true)) {
+        handlerThread.execute(this::drain);
+      }
+    }
+  }
+
+  // runs on the handler thread. The flag is cleared before the queue
+  // is emptied, so a message queued during the drain always schedules
+  // another one.
+  private void drain() {
+    drainScheduled.set(false);
+    List<GameMessage> batch = new ArrayList<GameMessage>();
+    GameMessage message;
+    while ((message = pending.poll()) != null) {
+      batch.add(message);
+    }
+    if (!batch.isEmpty()) {
+      handler.handleRemoteMoves(batch);
+      free.addAll(batch);
+    }
+  }
+}
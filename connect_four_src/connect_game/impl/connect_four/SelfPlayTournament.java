@@ -0,0 +1,295 @@
+package connect_game.impl.connect_four;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Description: Plays many games between two engines without any GUI,
+ * on every core, under the same rules as BoardFrame (GameSession.ROWS,
+ * COLS and WINNING_SCORE). The games are split into ranges on a
+ * work-stealing ForkJoinPool, so threads which finish their share
+ * early take over half of someone else's. Every game is independent:
+ * each thread has its own engines and board, the engines swap colors
+ * from one game to the next, and each game opens with a few random
+ * moves (the same for a given game number and seed) so deterministic
+ * engines do not replay one game over and over.
+ *
+ * One CSV line per game is streamed to the results file as the game
+ * ends: game number, red engine, yellow engine, winner (RED, YELLOW or
+ * DRAW), move count and each side's mean time per move in
+ * microseconds. A summary is printed at the end.
+ *
+ * Engines: random, greedy (the solver's move ordering without any
+ * search), solver:<ms per move>, mcts:<ms per move> (MonteCarloSearch
+ * on the game's thread), deepening:<ms per move> (IterativeDeepening)
+ *
+ * Arguments: engine engine [games=1000] [results=tournament.csv]
+ *            [random opening moves=2] [threads] [seed=1]
+ *
+ * */
+public class SelfPlayTournament {
+
+  // intends to choose moves for one side; an engine is only ever used
+  // by the thread which created it
+  public interface Engine {
+    int chooseColumn(GameState state, GameState.colorType toMove);
+  }
+
+  // a solver table of 2^20 slots (8MB) per thread keeps many threads'
+  // worth of solvers in memory
+  private static final int SOLVER_TABLE_SIZE = 1 << 20;
+
+  // 2^19 tree nodes (about 10MB) per thread, for the same reason
+  private static final int MCTS_CAPACITY = 1 << 19;
+
+  // games a task plays itself instead of splitting further
+  private static final int GAMES_PER_TASK = 16;
+
+  private final String[] engineNames;
+  private final int openingMoves;
+  private final long seed;
+  private final BufferedWriter results;
+  private final ThreadLocal<Engine[]> engines;
+
+  // wins of each engine by index, then draws
+  private final AtomicLongArray outcomes = new AtomicLongArray(3);
+  private final AtomicLong totalMoves = new AtomicLong();
+  private final AtomicLong gamesPlayed = new AtomicLong();
+
+  public SelfPlayTournament(String first, String second, int inOpeningMoves,
+      long inSeed, BufferedWriter inResults) {
+    engineNames = new String[] {first, second};
+    openingMoves = inOpeningMoves;
+    seed = inSeed;
+    results = inResults;
+    // fails early on a bad name, rather than on every pool thread
+    checkEngineName(first);
+    checkEngineName(second);
+    engines = ThreadLocal.withInitial(() -> new Engine[] {
+        newEngine(engineNames[0]), newEngine(engineNames[1])});
+  }
+
+  public static void main(String [] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: SelfPlayTournament engine engine [games]"
+          + " [results] [random opening moves] [threads] [seed]");
+      System.out.println("Engines: random, greedy, solver:<ms per move>,"
+          + " mcts:<ms per move>, deepening:<ms per move>");
+      System.exit(2);
+    }
+    int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    String resultsFile = args.length > 3 ? args[3] : "tournament.csv";
+    int openingMoves = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+    int threads = args.length > 5 ? Integer.parseInt(args[5])
+        : Runtime.getRuntime().availableProcessors();
+    long seed = args.length > 6 ? Long.parseLong(args[6]) : 1;
+
+    try (BufferedWriter results =
+        Files.newBufferedWriter(Paths.get(resultsFile))) {
+      results.write("game,red,yellow,winner,moves,red_us_per_move,"
+          + "yellow_us_per_move\n");
+      SelfPlayTournament tournament = null;
+      try {
+        tournament = new SelfPlayTournament(args[0], args[1], openingMoves,
+            seed, results);
+      }
+      catch (IllegalArgumentException error) {
+        System.out.println("Error: " + error.getMessage());
+        System.exit(2);
+      }
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      long start = System.nanoTime();
+      tournament.play(pool, games);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      pool.shutdown();
+      tournament.printSummary(seconds, threads);
+    }
+  }
+
+  // method intends to play games 0 to games - 1 on the pool and wait
+  // for all of them
+  public void play(ForkJoinPool pool, int games) {
+    pool.invoke(new GameRange(0, games));
+  }
+
+  // intends to reject a name newEngine would not accept, without
+  // building the engine and its tables
+  static void checkEngineName(String name) {
+    if (name.equals("random") || name.equals("greedy")) {
+      return;
+    }
+    for (String prefix : new String[] {"solver:", "mcts:", "deepening:"}) {
+      if (name.startsWith(prefix)) {
+        // a bad budget throws a NumberFormatException, as in newEngine
+        Long.parseLong(name.substring(prefix.length()));
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown engine " + name);
+  }
+
+  // function intends to create the engine with the given name
+  static Engine newEngine(String name) {
+    int rows = GameSession.ROWS;
+    int cols = GameSession.COLS;
+    int winningScore = GameSession.WINNING_SCORE;
+    if (name.equals("random")) {
+      SplittableRandom random = new SplittableRandom();
+      return (state, toMove) -> randomColumn(state, random);
+    }
+    if (name.equals("greedy")) {
+      Solver solver = new Solver(rows, cols, winningScore,
+          new TranspositionTable(1));
+      return (state, toMove) -> {
+        long mask = state.getBoard(GameState.colorType.RED)
+            | state.getBoard(GameState.colorType.YELLOW);
+        long current = state.getBoard(toMove);
+        long winning = solver.winningPositions(current, mask)
+            & solver.possibleMoves(mask);
+        return winning != 0 ? solver.columnOf(winning)
+            : solver.guessColumn(current, mask, state.getMoveCount());
+      };
+    }
+    if (name.startsWith("solver:")) {
+      long budgetMillis = Long.parseLong(name.substring("solver:".length()));
+      Solver solver = new Solver(rows, cols, winningScore,
+          new TranspositionTable(SOLVER_TABLE_SIZE));
+      return (state, toMove) ->
+          solver.chooseColumn(state, toMove, budgetMillis);
+    }
+    if (name.startsWith("mcts:")) {
+      long budgetMillis = Long.parseLong(name.substring("mcts:".length()));
+      MonteCarloSearch search = new MonteCarloSearch(rows, cols,
+          winningScore, 1, MCTS_CAPACITY);
+      return (state, toMove) ->
+          search.chooseColumn(state, toMove, budgetMillis);
+    }
+    if (name.startsWith("deepening:")) {
+      long budgetMillis =
+          Long.parseLong(name.substring("deepening:".length()));
+      IterativeDeepening search = new IterativeDeepening(rows, cols,
+          winningScore);
+      return (state, toMove) ->
+          search.chooseColumn(state, toMove, budgetMillis);
+    }
+    throw new IllegalArgumentException("Unknown engine " + name);
+  }
+
+  private static int randomColumn(GameState state, SplittableRandom random) {
+    int column;
+    do {
+      column = random.nextInt(state.getCols());
+    } while (state.columnIsFull(column));
+    return column;
+  }
+
+  // method intends to play one game to the end and stream its result.
+  // Even games give the first engine red, odd games the second.
+  void playGame(int number, GameState state) {
+    Engine[] players = engines.get();
+    int redIndex = number % 2;
+    state.reset();
+    SplittableRandom opening = new SplittableRandom(seed * 1000003 + number);
+    GameState.colorType turn = GameState.colorType.RED;
+    long[] thinkNanos = new long[2];
+    int[] moves = new int[2];
+    while (!state.gameIsOver()) {
+      int side = (turn == GameState.colorType.RED) ? redIndex : 1 - redIndex;
+      int column;
+      if (state.getMoveCount() < openingMoves) {
+        column = randomColumn(state, opening);
+      }
+      else {
+        long start = System.nanoTime();
+        column = players[side].chooseColumn(state, turn);
+        thinkNanos[side] += System.nanoTime() - start;
+        moves[side]++;
+      }
+      if (column < 0 || state.dropInColumn(column, turn) < 0) {
+        throw new IllegalStateException(engineNames[side]
+            + " played an illegal column " + column);
+      }
+      turn = (turn == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+
+    GameState.colorType winner = state.getWinner();
+    String outcome;
+    if (winner == GameState.colorType.UNKNOWN) {
+      outcome = "DRAW";
+      outcomes.incrementAndGet(2);
+    }
+    else {
+      outcome = winner.toString();
+      outcomes.incrementAndGet(winner == GameState.colorType.RED
+          ? redIndex : 1 - redIndex);
+    }
+    totalMoves.addAndGet(state.getMoveCount());
+    gamesPlayed.incrementAndGet();
+
+    String line = number + "," + engineNames[redIndex] + ","
+        + engineNames[1 - redIndex] + "," + outcome + ","
+        + state.getMoveCount() + ","
+        + meanMicros(thinkNanos[redIndex], moves[redIndex]) + ","
+        + meanMicros(thinkNanos[1 - redIndex], moves[1 - redIndex]) + "\n";
+    try {
+      synchronized (results) {
+        results.write(line);
+      }
+    }
+    catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private static long meanMicros(long nanos, int moves) {
+    return moves == 0 ? 0 : nanos / moves / 1000;
+  }
+
+  private void printSummary(double seconds, int threads) {
+    long games = gamesPlayed.get();
+    System.out.println(games + " games on " + threads + " threads in "
+        + String.format("%.1f", seconds) + " s ("
+        + Math.round(games / seconds * 3600) + " games per hour), "
+        + String.format("%.1f", (double) totalMoves.get() / games)
+        + " moves per game");
+    System.out.println(engineNames[0] + " won " + outcomes.get(0) + ", "
+        + engineNames[1] + " won " + outcomes.get(1) + ", drawn "
+        + outcomes.get(2));
+  }
+
+  // a range of game numbers, split in half until it is small enough
+  // to play on the current thread
+  private class GameRange extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int first;
+    private final int end;
+
+    GameRange(int inFirst, int inEnd) {
+      first = inFirst;
+      end = inEnd;
+    }
+
+    protected void compute() {
+      if (end - first > GAMES_PER_TASK) {
+        int middle = (first + end) >>> 1;
+        invokeAll(new GameRange(first, middle), new GameRange(middle, end));
+        return;
+      }
+      GameState state = new GameState(GameSession.ROWS, GameSession.COLS,
+          GameSession.WINNING_SCORE);
+      for (int number = first; number < end; number++) {
+        playGame(number, state);
+      }
+    }
+  }
+}
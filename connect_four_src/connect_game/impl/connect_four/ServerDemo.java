@@ -1,10 +1,15 @@
+package connect_game.impl.connect_four;
+
 /*
  * Description: This class provides the server implementation for
  * the game. The server's game frame implementation requires a port
  * number as the server's IP address is implicit. Thus, a port number
  * is established and passed in. When the server of the program runs,
  * it waits for a client to make a connection so that two machines 
- * may have the capability to communicate in real time.
+ * may have the capability to communicate in real time. The port
+ * (45000 by default) and, for a big Connect-K board, the rows,
+ * columns and winning score can be passed as arguments; the client
+ * must be started with the same board.
  * 
  * */
 
@@ -13,8 +18,18 @@ public class ServerDemo {
   public static void main(String [] args) {
     // Instantiates port
     int portNumber = 45000;
+    if (args.length > 0) {
+      portNumber = Integer.parseInt(args[0]);
+    }
     // creates the game frame for the server
-    BoardFrame game = new BoardFrame(portNumber);
+    BoardFrame game;
+    if (args.length > 3) {
+      game = new BoardFrame(portNumber, Integer.parseInt(args[1]),
+          Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+    }
+    else {
+      game = new BoardFrame(portNumber);
+    }
 
   } 
 }
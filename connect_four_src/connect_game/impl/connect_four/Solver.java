@@ -0,0 +1,466 @@
+package connect_game.impl.connect_four;
+
+import java.util.Arrays;
+
+/*
+ * Description: This class finds the best column for the computer
+ * player. It runs a negamax search with alpha-beta pruning over the
+ * same bitboard layout as GameState, trying the centre columns first
+ * (and, among those, moves creating the most threats) and remembering
+ * the bounds of positions it has seen in a transposition table.
+ * Positions of the first plies can be answered by an OpeningBook
+ * instead, so the moves of the opening are played at once.
+ *
+ * A position is described by three values: the chips of the player to
+ * move, the mask of all chips on the board and the number of moves
+ * played. Scores follow the usual convention: a positive score means
+ * the player to move wins, and the sooner the win the larger the
+ * score; 0 is a draw.
+ *
+ * */
+public class Solver implements Ponderer.Search {
+
+  // thrown (without a stack trace) to unwind the search once the
+  // deadline for the current move has passed
+  static final class SearchTimeout extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    SearchTimeout() {
+      super("search deadline passed", null, false, false);
+    }
+  }
+
+  private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+  // the deadline is only checked once every this many nodes
+  private static final long TIME_CHECK_MASK = 0xFFF;
+
+  // 2^23 slots take 64MB and are plenty for interactive 6 x 7 play
+  private static final int DEFAULT_TABLE_SIZE = 1 << 23;
+
+  private final int rows;
+  private final int cols;
+  private final int winningScore;
+  private final int height;
+  private final int squares;
+  private final long bottomMask;
+  private final long boardMask;
+  private final int minScore;
+  private final int maxScore;
+
+  // intends to try centre columns before the edges, since they take
+  // part in the most lines
+  private final int[] columnOrder;
+
+  // bit distance between neighbouring squares of a line: vertical,
+  // horizontal and both diagonals, where a line fits the board
+  private final int[] directions;
+
+  private final TranspositionTable table;
+
+  // exact scores of the first plies, looked up before searching
+  private OpeningBook openingBook;
+
+  // per-ply scratch space for move ordering, so the search does not
+  // allocate anything
+  private final long[][] sortedMoves;
+  private final int[][] sortedScores;
+
+  private long nodeCount;
+  private long deadline;
+
+  // set from another thread to end the search as if its deadline had
+  // passed
+  private volatile boolean stopped;
+
+  // summary of the last call to chooseColumn
+  private int lastScore;
+  private boolean lastSolved;
+
+  public Solver(int inRows, int inCols, int inWinningScore) {
+    this(inRows, inCols, inWinningScore,
+        new TranspositionTable(DEFAULT_TABLE_SIZE));
+  }
+
+  public Solver(int inRows, int inCols, int inWinningScore,
+      TranspositionTable inTable) {
+    // a GameState of the same size validates that the board fits
+    new GameState(inRows, inCols, inWinningScore);
+    rows = inRows;
+    cols = inCols;
+    winningScore = inWinningScore;
+    height = rows + 1;
+    squares = rows * cols;
+    table = inTable;
+
+    long bottom = 0;
+    for (int c = 0; c < cols; c++) {
+      bottom |= 1L << (c * height);
+    }
+    bottomMask = bottom;
+    boardMask = bottom * ((1L << rows) - 1);
+
+    // the transposition table stores a score in 8 bits, offset so
+    // that upper and lower bounds land in separate ranges above zero
+    minScore = -squares / 2;
+    maxScore = (squares + 1) / 2;
+
+    columnOrder = new int[cols];
+    for (int i = 0; i < cols; i++) {
+      columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+    }
+
+    // a line spans winningScore - 1 steps of its direction, so where
+    // that reaches 64 bits no line fits at all; leaving such a
+    // direction out keeps every shift of winningPositions below 64,
+    // where Java would wrap the shift count around
+    int[] steps = {1, height, height - 1, height + 1};
+    int fitting = 0;
+    for (int step : steps) {
+      if ((long) (winningScore - 1) * step < Long.SIZE) {
+        steps[fitting++] = step;
+      }
+    }
+    directions = Arrays.copyOf(steps, fitting);
+
+    sortedMoves = new long[squares + 1][cols];
+    sortedScores = new int[squares + 1][cols];
+  }
+
+  // function intends to pick the column for the player to move in the
+  // given game state within the time budget. Every column is solved
+  // exactly while time allows; once the deadline passes, the best
+  // column proven so far is kept if it wins or draws, and otherwise
+  // the search falls back on the best move-ordering guess among the
+  // columns not proven to lose. Returns -1 if no column can be
+  // played.
+  public int chooseColumn(GameState state, GameState.colorType toMove,
+      long timeBudgetMillis) {
+    long current = state.getBoard(toMove);
+    long mask = state.getBoard(GameState.colorType.RED)
+        | state.getBoard(GameState.colorType.YELLOW);
+    int moves = state.getMoveCount();
+    deadline = System.nanoTime() + timeBudgetMillis * 1000000L;
+    nodeCount = 0;
+    lastSolved = false;
+
+    long possible = (mask + bottomMask) & boardMask;
+    if (possible == 0) {
+      return -1;
+    }
+
+    // an immediate win needs no search at all
+    long winning = winningPositions(current, mask) & possible;
+    if (winning != 0) {
+      lastScore = (squares + 1 - moves) / 2;
+      lastSolved = true;
+      return columnOf(winning);
+    }
+
+    int bestColumn = guessColumn(current, mask, moves);
+    int bestScore = Integer.MIN_VALUE;
+    long provenLosses = 0;
+    try {
+      for (int i = 0; i < cols; i++) {
+        int column = columnOrder[i];
+        long move = columnMove(mask, column);
+        if (move == 0) {
+          continue;
+        }
+        int score = -solve(current ^ mask, mask | move, moves + 1);
+        if (score < 0) {
+          provenLosses |= move;
+        }
+        if (score > bestScore) {
+          bestScore = score;
+          bestColumn = column;
+        }
+      }
+      lastScore = bestScore;
+      lastSolved = true;
+    }
+    catch (SearchTimeout timeout) {
+      // keep a proven win or draw; otherwise trust the move ordering
+      // heuristic, but never over a column already proven to lose
+      if (bestScore >= 0) {
+        lastScore = bestScore;
+      }
+      else {
+        int guess = guessColumn(current, mask, moves, provenLosses);
+        if (guess >= 0) {
+          bestColumn = guess;
+        }
+        lastScore = 0;
+      }
+    }
+    return bestColumn;
+  }
+
+  // computes the exact score of a position for a search which has its
+  // own deadline, used by the ParallelSolver worker threads. Throws a
+  // SearchTimeout once the deadline passes.
+  int solve(long current, long mask, int moves, long deadlineNanos) {
+    deadline = deadlineNanos;
+    return solve(current, mask, moves);
+  }
+
+  // method intends to compute the exact score of a position, using a
+  // series of null-window searches which narrow [min, max] down to a
+  // single value, unless the opening book already holds it
+  int solve(long current, long mask, int moves) {
+    if (openingBook != null) {
+      int known = openingBook.get(current, mask, moves);
+      if (known != OpeningBook.MISSING) {
+        return known;
+      }
+    }
+    if ((winningPositions(current, mask)
+        & (mask + bottomMask) & boardMask) != 0) {
+      return (squares + 1 - moves) / 2;
+    }
+    int min = -(squares - moves) / 2;
+    int max = (squares + 1 - moves) / 2;
+    while (min < max) {
+      int med = min + (max - min) / 2;
+      if (med <= 0 && min / 2 < med) {
+        med = min / 2;
+      }
+      else if (med >= 0 && max / 2 > med) {
+        med = max / 2;
+      }
+      int result = negamax(current, mask, moves, med, med + 1);
+      if (result <= med) {
+        max = result;
+      }
+      else {
+        min = result;
+      }
+    }
+    return min;
+  }
+
+  // negamax search with alpha-beta pruning. Assumes the player to
+  // move cannot win immediately (that case is handled by the caller).
+  private int negamax(long current, long mask, int moves,
+      int alpha, int beta) {
+    nodeCount++;
+    if ((nodeCount & TIME_CHECK_MASK) == 0
+        && (stopped || System.nanoTime() > deadline)) {
+      throw TIMEOUT;
+    }
+
+    long next = possibleNonLosingMoves(current, mask);
+    if (next == 0) {
+      // every move lets the opponent win straight away
+      return -(squares - moves) / 2;
+    }
+    if (moves >= squares - 2) {
+      // nobody can win with the last two chips
+      return 0;
+    }
+
+    // the opponent cannot win on their next move, which narrows the
+    // range of possible scores
+    int min = -(squares - 2 - moves) / 2;
+    if (alpha < min) {
+      alpha = min;
+      if (alpha >= beta) {
+        return alpha;
+      }
+    }
+    int max = (squares - 1 - moves) / 2;
+
+    long key = current + mask;
+    int stored = table.get(key);
+    if (stored != 0) {
+      if (stored > maxScore - minScore + 1) {
+        min = stored + 2 * minScore - maxScore - 2;
+        if (alpha < min) {
+          alpha = min;
+          if (alpha >= beta) {
+            return alpha;
+          }
+        }
+      }
+      else {
+        max = stored + minScore - 1;
+      }
+    }
+    if (beta > max) {
+      beta = max;
+      if (alpha >= beta) {
+        return beta;
+      }
+    }
+
+    // intends to order the candidate moves by how many winning spots
+    // they create, falling back on centre-first order for ties
+    long[] moveList = sortedMoves[moves];
+    int[] scoreList = sortedScores[moves];
+    int count = 0;
+    for (int i = cols - 1; i >= 0; i--) {
+      long move = next & columnMask(columnOrder[i]);
+      if (move != 0) {
+        int score = Long.bitCount(winningPositions(current | move, mask));
+        int j = count++;
+        while (j > 0 && scoreList[j - 1] > score) {
+          moveList[j] = moveList[j - 1];
+          scoreList[j] = scoreList[j - 1];
+          j--;
+        }
+        moveList[j] = move;
+        scoreList[j] = score;
+      }
+    }
+
+    for (int i = count - 1; i >= 0; i--) {
+      long move = moveList[i];
+      int score = -negamax(current ^ mask, mask | move, moves + 1,
+          -beta, -alpha);
+      if (score >= beta) {
+        table.put(key, score + maxScore - 2 * minScore + 2);
+        return score;
+      }
+      if (score > alpha) {
+        alpha = score;
+      }
+    }
+    table.put(key, alpha - minScore + 1);
+    return alpha;
+  }
+
+  // returns the best guess for a column without searching: the non
+  // losing move creating the most winning spots, centre first
+  int guessColumn(long current, long mask, int moves) {
+    return guessColumn(current, mask, moves, 0);
+  }
+
+  // the same guess among the moves not excluded, e.g. those a search
+  // has proven to lose. Returns -1 if every move is excluded.
+  int guessColumn(long current, long mask, int moves, long excluded) {
+    long candidates = possibleNonLosingMoves(current, mask) & ~excluded;
+    if (candidates == 0) {
+      candidates = (mask + bottomMask) & boardMask & ~excluded;
+    }
+    int bestColumn = -1;
+    int bestScore = -1;
+    for (int i = 0; i < cols; i++) {
+      long move = candidates & columnMask(columnOrder[i]);
+      if (move != 0) {
+        int score = Long.bitCount(winningPositions(current | move, mask));
+        if (score > bestScore) {
+          bestScore = score;
+          bestColumn = columnOrder[i];
+        }
+      }
+    }
+    return bestColumn;
+  }
+
+  // intends to return the playable moves which do not give the
+  // opponent a win on their next turn: a forced block if there is
+  // exactly one threat, nothing if there are two, and never a square
+  // directly below one of the opponent's winning spots
+  long possibleNonLosingMoves(long current, long mask) {
+    long possible = (mask + bottomMask) & boardMask;
+    long opponentWin = winningPositions(current ^ mask, mask);
+    long forced = possible & opponentWin;
+    if (forced != 0) {
+      if ((forced & (forced - 1)) != 0) {
+        return 0;
+      }
+      possible = forced;
+    }
+    return possible & ~(opponentWin >>> 1);
+  }
+
+  // method intends to find every empty square which would complete a
+  // line of winningScore chips for the given player. For each
+  // direction and each place the empty square can take within a line,
+  // the player's chips are shifted onto it and AND-ed together.
+  long winningPositions(long position, long mask) {
+    long result = 0;
+    for (int direction : directions) {
+      for (int gap = 0; gap < winningScore; gap++) {
+        long line = boardMask;
+        for (int i = 0; i < winningScore && line != 0; i++) {
+          if (i != gap) {
+            int shift = (i - gap) * direction;
+            line &= shift > 0 ? position >>> shift : position << -shift;
+          }
+        }
+        result |= line;
+      }
+    }
+    return result & (boardMask ^ mask);
+  }
+
+  // returns the move which drops a chip into the column, or 0 if the
+  // column is full
+  long columnMove(long mask, int column) {
+    return (mask + (bottomMask & columnMask(column))) & columnMask(column);
+  }
+
+  long possibleMoves(long mask) {
+    return (mask + bottomMask) & boardMask;
+  }
+
+  // the score of a win on the very next move
+  int immediateWinScore(int moves) {
+    return (squares + 1 - moves) / 2;
+  }
+
+  long columnMask(int column) {
+    return ((1L << rows) - 1) << (column * height);
+  }
+
+  int columnOf(long move) {
+    return Long.numberOfTrailingZeros(move) / height;
+  }
+
+  int[] getColumnOrder() {
+    return columnOrder;
+  }
+
+  // intends to answer positions the book holds without searching
+  // them; null turns the book off
+  public void setOpeningBook(OpeningBook book) {
+    if (book != null && !book.fits(rows, cols, winningScore)) {
+      throw new IllegalArgumentException(
+          "Opening book was generated for another board size");
+    }
+    openingBook = book;
+  }
+
+  // intends to end the current and every later search at its next
+  // deadline check, until the solver is resumed with false
+  public void setStopped(boolean inStopped) {
+    stopped = inStopped;
+  }
+
+  public long getNodeCount() {
+    return nodeCount;
+  }
+
+  // the score of the last chosen column, only meaningful when the
+  // search finished before the deadline
+  public int getLastScore() {
+    return lastScore;
+  }
+
+  public boolean lastMoveWasSolved() {
+    return lastSolved;
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getCols() {
+    return cols;
+  }
+
+  public int getWinningScore() {
+    return winningScore;
+  }
+}
@@ -0,0 +1,52 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: This class watches a live game on a NioGameServer from
+ * the console. It connects to the server's spectator port, asks for
+ * one match by number and prints the board after every move, restart
+ * or turn swap it is sent. The IP address (127.0.0.1 by default), the
+ * spectator port (45001 by default) and the match number (1 by
+ * default) can be passed as arguments.
+ *
+ * */
+
+public class SpectatorDemo {
+
+  public static void main(String [] args) {
+    // sets up the IP, port number and match
+    String ipAddress = args.length > 0 ? args[0] : "127.0.0.1";
+    int portNumber = args.length > 1 ? Integer.parseInt(args[1]) : 45001;
+    int matchNumber = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+    ClientServerSocket socket = new ClientServerSocket(ipAddress, portNumber);
+    socket.startClient();
+    socket.sendMessage(GameProtocol.WATCH, matchNumber);
+    System.out.println("Watching match " + matchNumber);
+
+    GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+    GameMessage message = new GameMessage();
+    // every frame hands the turn to the other player, red moving first
+    GameState.colorType turn = GameState.colorType.RED;
+    while (true) {
+      socket.receiveMessage(message);
+      if (message.type == GameProtocol.RESTART) {
+        game.reset();
+        System.out.println(turn + " restarted the game");
+      }
+      else if (message.type == GameProtocol.SWAP_TURN) {
+        System.out.println(turn + " passed the turn");
+      }
+      else if (message.type == GameProtocol.MOVE) {
+        game.dropInColumn(message.value, turn);
+        System.out.println(turn + " played column " + message.value);
+        System.out.print(game);
+        if (game.gameIsOver()) {
+          System.out.println("That's game! Winner: " + game.getWinner());
+        }
+      }
+      turn = (turn == GameState.colorType.RED)
+          ? GameState.colorType.YELLOW : GameState.colorType.RED;
+    }
+  }
+}
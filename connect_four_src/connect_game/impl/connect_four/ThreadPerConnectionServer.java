@@ -0,0 +1,341 @@
+package connect_game.impl.connect_four;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Description: A multi-game server written in the same blocking style
+ * as ClientServerSocket: every connection is read by a thread of its
+ * own which simply waits in readFully for the next frame. Built on
+ * Java 21 or later, those threads are virtual threads, which cost a
+ * few hundred bytes of heap while parked, so tens of thousands of
+ * mostly idle boards can stay connected. In a Java 17 build, or when
+ * asked for a baseline, each connection gets a platform thread
+ * instead.
+ *
+ * Connections are paired in arrival order by a Matchmaker, red
+ * first, like NioGameServer, and the same rules apply: the server
+ * keeps its own GameState per match, only the player whose turn it is
+ * may send, and a rule breaker is disconnected together with their
+ * opponent. A connection is only switched to blocking reads once its
+ * match starts: while it waits in the queue it is checked with a
+ * non-blocking read before being paired, so a player who has left is
+ * never matched, and anything the player sent meanwhile is read first
+ * once the match starts.
+ *
+ * Each match runs as a small scope. The match's thread reads the red
+ * player and forks one task reading the yellow player; whichever task
+ * ends first closes both sockets, which ends the other one's blocking
+ * read, and the match does not return before its forked task has
+ * been joined. No thread of a match outlives it.
+ *
+ * Locks are ReentrantLocks rather than synchronized blocks, since a
+ * virtual thread blocked on a socket write inside a synchronized
+ * block would pin its carrier thread.
+ *
+ * */
+public class ThreadPerConnectionServer {
+
+  private final int portNumber;
+  private final ExecutorService executor;
+  private final boolean virtual;
+  private final Matchmaker<Waiting> matchmaker;
+
+  // uses virtual threads when the build has them, unless a platform
+  // thread per connection is asked for
+  public ThreadPerConnectionServer(int inPortNumber, boolean platformThreads) {
+    portNumber = inPortNumber;
+    ExecutorService virtualThreads =
+        platformThreads ? null : VirtualThreads.newExecutor();
+    virtual = virtualThreads != null;
+    executor = virtual ? virtualThreads : Executors.newCachedThreadPool();
+    matchmaker = new Matchmaker<Waiting>(new Matchmaker.Listener<Waiting>() {
+      public boolean stillWaiting(Waiting player) {
+        return player.stillConnected();
+      }
+
+      public void startMatch(Waiting red, Waiting yellow) {
+        executor.execute(() -> runMatch(red, yellow));
+      }
+    });
+  }
+
+  public boolean usesVirtualThreads() {
+    return virtual;
+  }
+
+  // intends to accept connections on the calling thread for as long as
+  // the server runs
+  public void start() {
+    ServerSocketChannel serverChannel;
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress(portNumber), 1024);
+      System.out.println("Game server listening on port " + portNumber
+          + " with a " + (virtual ? "virtual" : "platform")
+          + " thread per connection");
+    }
+    catch (IOException ioe) {
+      System.out.println("Error: caught exception starting server.");
+      System.exit(7);
+      return;
+    }
+
+    while (true) {
+      try {
+        pair(serverChannel.accept());
+      }
+      catch (IOException ioe) {
+        System.out.println("Error: accepting a client connection.");
+      }
+    }
+  }
+
+  // intends to pair connections in the order they arrive: the first
+  // to connect plays red and the second plays yellow
+  private void pair(SocketChannel channel) throws IOException {
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    matchmaker.join(new Waiting(channel));
+  }
+
+  // method intends to run one match from its first turn to the end of
+  // both of its readers
+  private void runMatch(Waiting red, Waiting yellow) {
+    Match match;
+    try {
+      match = new Match(new Player(red, GameState.colorType.RED),
+          new Player(yellow, GameState.colorType.YELLOW));
+    }
+    catch (IOException ioe) {
+      Match.closeQuietly(red.channel.socket());
+      Match.closeQuietly(yellow.channel.socket());
+      return;
+    }
+    Future<?> yellowReader = null;
+    try {
+      // the red player's board is waiting like any client, so a turn
+      // swap hands it the first move
+      send(match.red, GameProtocol.SWAP_TURN, 0);
+      yellowReader = executor.submit(() -> relay(match, match.yellow));
+      relay(match, match.red);
+    }
+    catch (IOException ioe) {
+      match.close();
+    }
+    finally {
+      join(yellowReader);
+    }
+  }
+
+  private void join(Future<?> task) {
+    if (task == null) {
+      return;
+    }
+    try {
+      task.get();
+    }
+    catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException error) {
+      System.out.println("Error: match reader failed: " + error.getCause());
+    }
+  }
+
+  // intends to read one player's frames until their connection or
+  // their opponent's ends, and then end the match
+  private void relay(Match match, Player player) {
+    GameMessage message = new GameMessage();
+    try {
+      while (true) {
+        player.receive(message);
+        handleMessage(match, player, message);
+      }
+    }
+    catch (IOException | IllegalArgumentException error) {
+      // a closed socket, a bad frame or a broken rule all end the match
+    }
+    finally {
+      match.close();
+    }
+  }
+
+  // method intends to check a message against the server's copy of
+  // the game and relay it to the opponent if it is legal
+  private void handleMessage(Match match, Player player, GameMessage message)
+      throws IOException {
+    if (message.type == GameProtocol.PING) {
+      send(player, GameProtocol.ACK, message.sequence);
+      return;
+    }
+    if (message.type == GameProtocol.ACK) {
+      return;
+    }
+    if (message.type == GameProtocol.WATCH) {
+      throw new IOException("Players cannot watch");
+    }
+    match.lock.lock();
+    try {
+      if (match.turn != player.color) {
+        throw new IOException("Message sent out of turn");
+      }
+      if (message.type == GameProtocol.RESTART) {
+        match.game.reset();
+      }
+      else if (message.type == GameProtocol.MOVE) {
+        int column = message.value;
+        if (column < 0 || column >= GameSession.COLS
+            || match.game.dropInColumn(column, player.color) < 0) {
+          throw new IOException("Illegal column: " + column);
+        }
+      }
+      Player opponent = match.opponentOf(player);
+      match.turn = opponent.color;
+      send(opponent, message.type, message.value);
+    }
+    finally {
+      match.lock.unlock();
+    }
+  }
+
+  // writes one frame; both of a match's threads may send to a player
+  private void send(Player player, byte type, int value) throws IOException {
+    player.outputLock.lock();
+    try {
+      player.outputBuffer.clear();
+      GameProtocol.encode(player.outputBuffer, type, ++player.outputSequence,
+          value);
+      player.output.write(player.outputFrame, 0,
+          player.outputBuffer.position());
+    }
+    finally {
+      player.outputLock.unlock();
+    }
+  }
+
+  // the state the server keeps for one connected player
+  private static class Player {
+    final Socket socket;
+    final GameState.colorType color;
+    final DataInputStream input;
+    final DataOutputStream output;
+    final byte[] inputFrame =
+        new byte[GameProtocol.LENGTH_FIELD + GameProtocol.MAX_BODY_LENGTH];
+    final ByteBuffer inputBuffer = ByteBuffer.wrap(inputFrame);
+    final byte[] outputFrame = new byte[GameProtocol.FRAME_LENGTH];
+    final ByteBuffer outputBuffer = ByteBuffer.wrap(outputFrame);
+    final ReentrantLock outputLock = new ReentrantLock();
+    int outputSequence = 0;
+
+    // the bytes sent while waiting are read before the socket's own
+    Player(Waiting waiting, GameState.colorType inColor) throws IOException {
+      waiting.channel.configureBlocking(true);
+      socket = waiting.channel.socket();
+      color = inColor;
+      InputStream stream = socket.getInputStream();
+      ByteBuffer early = waiting.early;
+      if (early.position() > 0) {
+        stream = new SequenceInputStream(new ByteArrayInputStream(
+            early.array(), 0, early.position()), stream);
+      }
+      input = new DataInputStream(stream);
+      output = new DataOutputStream(socket.getOutputStream());
+    }
+
+    // blocks until the next frame this version can read has arrived
+    // and decodes it, skipping any others the same way
+    // ClientServerSocket does
+    void receive(GameMessage message) throws IOException {
+      do {
+        input.readFully(inputFrame, 0, GameProtocol.LENGTH_FIELD);
+        int length = inputBuffer.getShort(0) & 0xFFFF;
+        if (length < GameProtocol.BODY_LENGTH
+            || length > GameProtocol.MAX_BODY_LENGTH) {
+          throw new IOException("Bad frame length " + length);
+        }
+        input.readFully(inputFrame, GameProtocol.LENGTH_FIELD, length);
+      } while (!GameProtocol.decodeBody(inputBuffer,
+          GameProtocol.LENGTH_FIELD, message));
+    }
+  }
+
+  // a connection waiting for an opponent, still in non-blocking mode,
+  // and what it has sent so far
+  private static class Waiting {
+    final SocketChannel channel;
+    final ByteBuffer early =
+        ByteBuffer.allocate(GameProtocol.LENGTH_FIELD
+            + GameProtocol.MAX_BODY_LENGTH);
+
+    Waiting(SocketChannel inChannel) {
+      channel = inChannel;
+    }
+
+    // function intends to tell whether the player is still connected.
+    // A peer closing its end only shows as the end of the stream, so
+    // the channel is read, keeping what arrives; a player found gone
+    // is closed. Only called from the accepting thread.
+    boolean stillConnected() {
+      try {
+        if (channel.read(early) >= 0) {
+          return true;
+        }
+      }
+      catch (IOException ioe) {
+        // a reset connection is gone as well
+      }
+      Match.closeQuietly(channel.socket());
+      return false;
+    }
+  }
+
+  // the state the server keeps for one game between two players
+  private static class Match {
+    final Player red;
+    final Player yellow;
+    final GameState game = new GameState(GameSession.ROWS, GameSession.COLS,
+        GameSession.WINNING_SCORE);
+    final ReentrantLock lock = new ReentrantLock();
+    GameState.colorType turn = GameState.colorType.RED;
+
+    Match(Player inRed, Player inYellow) {
+      red = inRed;
+      yellow = inYellow;
+    }
+
+    Player opponentOf(Player player) {
+      return player == red ? yellow : red;
+    }
+
+    // ends the match by closing both players' connections, which also
+    // wakes up whichever reader is still blocked
+    void close() {
+      closeQuietly(red.socket);
+      closeQuietly(yellow.socket);
+    }
+
+    static void closeQuietly(Socket socket) {
+      try {
+        socket.close();
+      }
+      catch (IOException ioe) {
+        // nothing left to do with a socket that fails to close
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Description: A fixed-size hash table which remembers the bounds the
+ * solver has already found for a position, so that positions reached
+ * through different move orders are only searched once. Each slot is
+ * a single long: the low 56 bits of the key in the upper part and an
+ * 8 bit value in the lower part. Because the table size is an odd
+ * prime above 2^8, the slot index and the stored 56 bits together
+ * identify a 64 bit key exactly (Chinese remainder theorem), so no
+ * false hits are possible. A value of 0 means "not found".
+ *
+ * The table can be shared by several solver threads without locks:
+ * a slot is always read and written as one whole long (opaque access
+ * on an AtomicLongArray), so a reader sees either the old or the new
+ * entry, and a lost update only costs a little repeated search.
+ *
+ * */
+public class TranspositionTable {
+  private static final long KEY_MASK = (1L << 56) - 1;
+
+  private final AtomicLongArray entries;
+  private final int size;
+
+  // the table is rounded up to the next prime number of slots
+  public TranspositionTable(int minimumSize) {
+    size = nextPrime(Math.max(minimumSize, 257));
+    entries = new AtomicLongArray(size);
+  }
+
+  // intends to store a value between 1 and 255 for the given key,
+  // overwriting whatever position previously shared the slot
+  public void put(long key, int value) {
+    entries.setOpaque(index(key), ((key & KEY_MASK) << 8) | (value & 0xFF));
+  }
+
+  // returns the value stored for the key, or 0 if it is missing
+  public int get(long key) {
+    long entry = entries.getOpaque(index(key));
+    if ((entry >>> 8) == (key & KEY_MASK)) {
+      return (int) (entry & 0xFF);
+    }
+    return 0;
+  }
+
+  public void reset() {
+    for (int i = 0; i < size; i++) {
+      entries.setOpaque(i, 0);
+    }
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  private int index(long key) {
+    return (int) Long.remainderUnsigned(key, size);
+  }
+
+  private static int nextPrime(int value) {
+    int candidate = value | 1;
+    while (!isPrime(candidate)) {
+      candidate += 2;
+    }
+    return candidate;
+  }
+
+  private static boolean isPrime(int value) {
+    for (int divisor = 3; (long) divisor * divisor <= value; divisor += 2) {
+      if (value % divisor == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
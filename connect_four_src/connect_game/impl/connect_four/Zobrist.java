@@ -0,0 +1,78 @@
+package connect_game.impl.connect_four;
+
+/*
+ * Description: Zobrist keys for positions on boards of any size. Every
+ * square and color has a fixed pseudo-random 64 bit key, and the key
+ * of a position is the XOR of the keys of its chips, so a board keeps
+ * its key up to date with a single XOR per dropped chip. Boards also
+ * keep the key of their left-right mirror image, built from the keys
+ * of the mirrored squares, and the smaller of the two is a canonical
+ * key shared by a position and its mirror image.
+ *
+ * The square keys are not stored in a table, which would take 16MB
+ * for a 1000 x 1000 board, but computed from the square's column,
+ * height and color with the SplitMix64 finalizer, whose output passes
+ * the usual statistical test suites. They depend only on the square,
+ * not on the board size or the process, so every board implementation
+ * and both ends of a connection agree on the key of a position, which
+ * makes the keys usable for resync checks. The key of the empty board
+ * is 0, and the side to move is not part of the key (a turn swap
+ * keeps the board as it was).
+ *
+ * GameState also has exact keys (positionKey, canonicalKey) for the
+ * boards which fit in a bitboard; unlike those, Zobrist keys of two
+ * different positions may in principle collide. ZobristCheck measures
+ * how often they do.
+ *
+ * */
+public final class Zobrist {
+
+  private static final long SEED = 0x43344B45595321L;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private Zobrist() {
+  }
+
+  // function intends to return the key of a chip of the given color at
+  // the given height (0 being the bottom) of the column
+  public static long square(int column, int height,
+      GameState.colorType color) {
+    long index = ((long) column << 32) | ((long) height << 1)
+        | (color == GameState.colorType.YELLOW ? 1 : 0);
+    return mix(SEED + index * GOLDEN_GAMMA);
+  }
+
+  // the key of the same chip on the mirror image of a board with the
+  // given number of columns
+  public static long mirrored(int column, int height, int cols,
+      GameState.colorType color) {
+    return square(cols - 1 - column, height, color);
+  }
+
+  // the smaller of a key and its mirror image's key (unsigned). Being
+  // the smaller of two, its top bits lean towards 0: index tables with
+  // the low bits.
+  public static long canonical(long key, long mirroredKey) {
+    return Long.compareUnsigned(key, mirroredKey) <= 0 ? key : mirroredKey;
+  }
+
+  // function intends to compute a board's key from its squares, in as
+  // many steps as it has chips, e.g. to check an incrementally kept
+  // key or to resync with the other side
+  public static long compute(GameBoard board) {
+    long key = 0;
+    for (int c = 0; c < board.getCols(); c++) {
+      for (int h = 0; h < board.getColumnHeight(c); h++) {
+        key ^= square(c, h, board.getColor(board.getRows() - 1 - h, c));
+      }
+    }
+    return key;
+  }
+
+  // SplitMix64's finalizer: every input bit affects every output bit
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
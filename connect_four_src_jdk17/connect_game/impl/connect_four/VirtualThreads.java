@@ -0,0 +1,22 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.ExecutorService;
+
+/*
+ * Description: Stands in for the virtual threads of
+ * ThreadPerConnectionServer when the project is built for Java 17,
+ * which has none, so the server falls back on platform threads. A
+ * build on Java 21 or later compiles connect_four_src_jdk21 instead.
+ *
+ * */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  // function intends to create an executor starting one virtual thread
+  // per task, or return null where there are no virtual threads
+  static ExecutorService newExecutor() {
+    return null;
+  }
+}
@@ -0,0 +1,23 @@
+package connect_game.impl.connect_four;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Description: Gives ThreadPerConnectionServer its virtual threads.
+ * This version is compiled when the project is built on Java 21 or
+ * later (the jdk21 profile of the pom); connect_four_src_jdk17 holds
+ * the stand-in for older builds.
+ *
+ * */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  // function intends to create an executor starting one virtual thread
+  // per task, or return null where there are no virtual threads
+  static ExecutorService newExecutor() {
+    return Executors.newVirtualThreadPerTaskExecutor();
+  }
+}